@@ -21,6 +21,50 @@ public interface ILogViewerConstants {
 	// FileTail settings -----------------------------------------------------------
 
 	public static final long TAIL_FILEOPEN_ERROR_WAIT		= 500;
+	/* poll interval while the file is watched for changes, only a safety net for lost events */
+	public static final long TAIL_WATCH_FALLBACK_WAIT		= 2000;
+	/* changes found without an event before a tail falls back to polling */
+	public static final int TAIL_WATCH_MAX_MISSED_EVENTS	= 3;
+	public static final int TAIL_MIN_READ_SIZE				= 4096;
+	/* lines shown first when a file is opened, the rest of the backlog follows */
+	public static final int TAIL_FIRST_SCREEN_LINES			= 100;
+	/* bytes searched backwards for the start of the backlog */
+	public static final long TAIL_MAX_BACKWARD_SCAN			= 67108864;
+	/* upper bound of the threads shared by all tails */
+	public static final int TAIL_SCHEDULER_MAX_THREADS		= 4;
+	public static final long TAIL_SCHEDULER_SHUTDOWN_WAIT	= 1000;
+	/* bytes loaded at once while scrolling through a paged document */
+	public static final int PAGE_SIZE						= 65536;
+	/* every n-th line gets an entry in the line index */
+	public static final int LINE_INDEX_STEP					= 1024;
+	/* bytes indexed per poll before the other tails get their turn */
+	public static final int LINE_INDEX_SCAN_SIZE			= 16777216;
+	public static final int LINE_INDEX_BUFFER_SIZE			= 1048576;
+	/* smaller files are scanned again instead of keeping a sidecar */
+	public static final long LINE_INDEX_MIN_FILE_SIZE		= 1048576;
+	public static final String LINE_INDEX_DIR				= "lineindex"; //$NON-NLS-1$
+	/* separates the paths of a merged tail, each file name may be a glob */
+	public static final String MERGED_PATH_DELIMITER		= ";"; //$NON-NLS-1$
+	/* how long a merged line waits for earlier lines of the other files */
+	public static final long TAIL_MERGE_REORDER_WINDOW		= 1000;
+	public static final int TAIL_MERGE_INITIAL_LOAD_SIZE	= 262144;
+	/* records a stream keeps until the view takes them */
+	public static final int STREAM_RING_CAPACITY			= 65536;
+	public static final int STREAM_READ_SIZE				= 65536;
+	/* size of the memory mapped parts of a spill file */
+	public static final int SPILL_SEGMENT_SIZE				= 67108864;
+	/* bytes compressed at once if the history is kept in memory */
+	public static final int HISTORY_BLOCK_SIZE				= 65536;
+	/* queued tail updates from which the view counts as saturated, and how often that is logged */
+	public static final int UI_UPDATE_SATURATED_DEPTH		= 1000;
+	public static final long UI_UPDATE_WARNING_INTERVAL		= 60000;
+	/* tail updates queued per document at most, the tail reads again after the wait */
+	public static final int UI_UPDATE_MAX_PENDING			= 64;
+	public static final long TAIL_BUSY_WAIT					= 50;
+	/* milliseconds between loading two restored tabs in the background */
+	public static final int TAB_LOADING_INTERVAL			= 250;
+	/* bytes the memory governor leaves to a document it shrinks */
+	public static final long MIN_GOVERNED_DOCUMENT_SIZE		= 65536;
 
 	// Images ------------------------------------------------------------------
 
@@ -64,14 +108,46 @@ public interface ILogViewerConstants {
 	public static final int 	DEFAULT_BACKLOG				= 4000;
 	public static final String 	PREF_BACKLOG				= "BACKLOG"; //$NON-NLS-1$
 
-	public static final int 	MAX_TAIL_BUFFER_SIZE		= 4096;
-	public static final int 	DEFAULT_BUFFER_CAPACITY		= 1024;
+	/* limits the backlog of each document in KB of text as well, 0 means the rows only */
+	public static final int 	MAX_BACKLOG_SIZE			= 1048576;
+	public static final int 	DEFAULT_BACKLOG_SIZE		= 0;
+	public static final String 	PREF_BACKLOG_SIZE			= "BACKLOG_SIZE"; //$NON-NLS-1$
+
+	/* MB all open documents may keep together, the least recently viewed ones are shrunk first, 0 means no limit */
+	public static final int 	MAX_MEMORY_BUDGET			= 65536;
+	public static final int 	DEFAULT_MEMORY_BUDGET		= 256;
+	public static final String 	PREF_MEMORY_BUDGET			= "MEMORY_BUDGET"; //$NON-NLS-1$
+
+	/* upper bound for a single read, the tail reads less if less is available */
+	public static final int 	MAX_TAIL_BUFFER_SIZE		= 8388608;
+	public static final int 	DEFAULT_BUFFER_CAPACITY		= 262144;
 	public static final String 	PREF_BUFFER					= "BUFFER"; //$NON-NLS-1$
 
 	public static final int		MAX_READWAIT_SIZE			= 1000000;
 	public static final int		DEFAULT_READWAIT_SIZE		= 250;
 	public static final String	PREF_READWAIT				= "READWAIT"; //$NON-NLS-1$
 
+	/* how many times per second the tail updates are applied to the view */
+	public static final int		MAX_UI_UPDATE_RATE			= 60;
+	public static final int		DEFAULT_UI_UPDATE_RATE		= 30;
+	public static final String	PREF_UI_UPDATE_RATE			= "UI_UPDATE_RATE"; //$NON-NLS-1$
+
+	/* watch files for changes instead of polling every read wait milliseconds */
+	public static boolean DEFAULT_WATCH_FILES				= true;
+	public static final String	PREF_WATCH_FILES			= "WATCH_FILES"; //$NON-NLS-1$
+
+	/* keep the whole file reachable by loading older pages while scrolling up */
+	public static boolean DEFAULT_PAGED_FILES				= false;
+	public static final String	PREF_PAGED_FILES			= "PAGED_FILES"; //$NON-NLS-1$
+
+	/* keep all lines of tails which can't be read again in a temporary file, the backlog is only the part in memory */
+	public static boolean DEFAULT_SPILL_HISTORY				= false;
+	public static final String	PREF_SPILL_HISTORY			= "SPILL_HISTORY"; //$NON-NLS-1$
+
+	/* keep that history as compressed blocks in memory instead */
+	public static boolean DEFAULT_COMPRESS_HISTORY			= false;
+	public static final String	PREF_COMPRESS_HISTORY		= "COMPRESS_HISTORY"; //$NON-NLS-1$
+
 	public static final String	PREF_ENCODING				= "ENCODING"; //$NON-NLS-1$
 
 	public static final String	PREF_CURSORLINE_COLOR		= "CURSOR_LINE_COLOR"; //$NON-NLS-1$
@@ -95,7 +171,7 @@ public interface ILogViewerConstants {
 	public static final String	PREF_SHOW_WHEN_UPDATED   	= "SHOW_WHEN_UPDATED"; //$NON-NLS-1$
 
 	/* filter extensions */
-	public static String DEFAULT_FILTER_EXTENSIONS     	    = "*.log;*.txt;*.er?";
+	public static String DEFAULT_FILTER_EXTENSIONS     	    = "*.log;*.txt;*.er?;*.gz;*.zip";
 	public static final String	PREF_FILTER_EXTENSIONS   	= "FILTER_EXTENSIONS"; //$NON-NLS-1$
 
 	/* show top of file */
@@ -21,7 +21,8 @@ public class LogFile {
 	public enum LogFileType {
 		LOGFILE_SYSTEM_FILE,
 		LOGFILE_ECLIPSE_CONSOLE,
-		LOGFILE_STREAM
+		LOGFILE_STREAM,
+		LOGFILE_MERGED
 	};
 
     private String path;
@@ -74,8 +75,18 @@ public class LogFile {
     }
 
     public String getName() {
-        int index = path.lastIndexOf(System.getProperty("file.separator"));
-        return index != -1 ? path.substring(index + 1) : path;
+        if (type == LogFileType.LOGFILE_MERGED) {
+            // names of all merged files or globs
+            StringBuilder names = new StringBuilder();
+            for (String entry : path.split(ILogViewerConstants.MERGED_PATH_DELIMITER)) {
+                if (names.length() > 0) {
+                    names.append(ILogViewerConstants.MERGED_PATH_DELIMITER);
+                }
+                names.append(getName(entry.trim()));
+            }
+            return names.toString();
+        }
+        return getName(path);
     }
 
     public void setNamePattern(String namePattern) {
@@ -89,4 +100,11 @@ public class LogFile {
     public void setMonitor(boolean monitor) {
     	this.monitor = monitor;
     }
+
+    // Private -----------------------------------------------------------------
+
+    private static String getName(String path) {
+        int index = path.lastIndexOf(System.getProperty("file.separator"));
+        return index != -1 ? path.substring(index + 1) : path;
+    }
 }
@@ -28,16 +28,22 @@ public class LogFileTab {
     
     private String key;
     private TabItem item;
+    private LogFile file;
     private LogDocument document;
     private ISelection selection;
     private int topIndex;
     
     // Constructor -------------------------------------------------------------
     
-    public LogFileTab(String key, TabItem item, LogDocument document) {
+    /**
+     * creates the tab without a document, it is loaded by the view when the
+     * tab is needed
+     */
+    public LogFileTab(String key, TabItem item, LogFile file) {
         this.key = key;
         this.item = item;
-        this.document = document;
+        this.file = file;
+        this.document = null;
         this.selection = null;
         this.topIndex = 0;
     }
@@ -45,7 +51,9 @@ public class LogFileTab {
     // Public ------------------------------------------------------------------
     
     public void close() throws IOException {
-        document.setMonitor(false);
+        if(document != null) {
+            document.dispose();
+        }
     }
     
     public String getKey() {
@@ -56,10 +64,41 @@ public class LogFileTab {
         return item;
     }
     
+    /**
+     * @return the document or null as long as the tab was not loaded
+     */
     public LogDocument getDocument() {
         return document;
     }
 
+    public void setDocument(LogDocument document) {
+        this.document = document;
+    }
+
+    public boolean isLoaded() {
+        return document != null;
+    }
+
+    public LogFile getFile() {
+        return file;
+    }
+
+    public boolean isMonitor() {
+        return document != null ? document.isMonitor() : file.getMonitor();
+    }
+
+    /**
+     * starts or stops the tail, a tab which is not loaded yet only keeps the
+     * state for later
+     */
+    public void setMonitor(boolean monitor) {
+        if(document != null) {
+            document.setMonitor(monitor);
+        } else {
+            file.setMonitor(monitor);
+        }
+    }
+
 	public ISelection getSelection() {
 		return selection;
 	}
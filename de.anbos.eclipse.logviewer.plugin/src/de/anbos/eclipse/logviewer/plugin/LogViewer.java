@@ -69,16 +69,24 @@ import de.anbos.eclipse.logviewer.plugin.action.FileClearAction;
 import de.anbos.eclipse.logviewer.plugin.action.FileCloseViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.FileEncondingViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.FileOpenViewAction;
+import de.anbos.eclipse.logviewer.plugin.action.GoToLineAction;
+import de.anbos.eclipse.logviewer.plugin.action.MergedFileOpenViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.PreferencesViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.RefreshCurrentFileViewAction;
+import de.anbos.eclipse.logviewer.plugin.action.ScrollLockAction;
 import de.anbos.eclipse.logviewer.plugin.action.StartTailOnAllFileViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.StartTailOnCurrentFileViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.StopTailOnAllFileViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.StopTailOnCurrentFileViewAction;
+import de.anbos.eclipse.logviewer.plugin.action.StreamOpenViewAction;
 import de.anbos.eclipse.logviewer.plugin.action.TabRenameAction;
 import de.anbos.eclipse.logviewer.plugin.action.delegate.FileOpenViewActionDelegate;
 import de.anbos.eclipse.logviewer.plugin.file.FileTail;
+import de.anbos.eclipse.logviewer.plugin.file.LineIndex;
+import de.anbos.eclipse.logviewer.plugin.file.TailScheduler;
+import de.anbos.eclipse.logviewer.plugin.file.document.IScrollLockListener;
 import de.anbos.eclipse.logviewer.plugin.file.document.LogDocument;
+import de.anbos.eclipse.logviewer.plugin.file.document.MemoryGovernor;
 import de.anbos.eclipse.logviewer.plugin.preferences.FileHistoryTracker;
 import de.anbos.eclipse.logviewer.plugin.preferences.PreferenceValueConverter;
 import de.anbos.eclipse.logviewer.plugin.ui.menu.LocalPullDownMenu;
@@ -102,8 +110,11 @@ public class LogViewer extends ViewPart {
     private TabItem oldTabItem;
 
     private ViewDocumentListener documentListener;
+    private ViewScrollLockListener scrollLockListener;
 
     private FileOpenViewAction fileOpenAction;
+    private MergedFileOpenViewAction mergedFileOpenAction;
+    private StreamOpenViewAction streamOpenAction;
     private ClearHistoryAction clearHistoryAction;
     private PreferencesViewAction preferencesAction;
     private FileCloseViewAction fileCloseAction;
@@ -116,10 +127,14 @@ public class LogViewer extends ViewPart {
     private FileEncondingViewAction fileEncodingAction;
     private TabRenameAction tabRenameAction;
     private FileClearAction fileClearAction;
+    private GoToLineAction goToLineAction;
+    private ScrollLockAction scrollLockAction;
 
     private int monitorCounter;
     private int monitorCounterMax;
 
+    private boolean tabLoadingScheduled;
+
     // Constructor -------------------------------------------------------------
 
     public LogViewer() {
@@ -141,6 +156,7 @@ public class LogViewer extends ViewPart {
         //viewer
         this.parent = parent;
         documentListener = new ViewDocumentListener();
+        scrollLockListener = new ViewScrollLockListener();
         tabfolder = new TabFolder(parent,0);
         tabfolder.addSelectionListener(new TabSelectionListener());
         viewer = new LogFileViewer(tabfolder,SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
@@ -174,7 +190,7 @@ public class LogViewer extends ViewPart {
     public void closeCurrentLogFile() {
         try {
             LogFileTab tab = getSelectedTab();
-            removeMonitorCounter(tab.getDocument().isMonitor());
+            removeMonitorCounter(tab.isMonitor());
             tab.close();
             logTab.remove(tab.getKey());
         } catch(IOException e) {
@@ -189,6 +205,10 @@ public class LogViewer extends ViewPart {
             } else {
                 tabfolder.setSelection(index - 1);
             }
+            // loads and shows the document of the tab selected now
+            Event event = new Event();
+            event.item = getSelectedItem();
+            tabfolder.notifyListeners(SWT.Selection, event);
         }
     }
 
@@ -209,6 +229,10 @@ public class LogViewer extends ViewPart {
 				}
 			} else {
 				FileTail file = getSelectedTab().getDocument().getReader().getFileTail();
+				if (file == null) {
+					logger.logWarning("clear not supported: " + getCurrentLogFilePath()); //$NON-NLS-1$
+					return;
+				}
 				Buffer buffer = file.getBuffer();
 				if (buffer != null) {
 					file.stopFileMapping(buffer);
@@ -232,7 +256,7 @@ public class LogViewer extends ViewPart {
                 tab.close();
                 tab.getItem().dispose();
             } catch (IOException e) {
-                logger.logError("unable to remove tab: " + tab.getDocument().getFile().getKey()); //$NON-NLS-1$
+                logger.logError("unable to remove tab: " + tab.getKey()); //$NON-NLS-1$
             }
         }
         logTab.clear();
@@ -255,10 +279,12 @@ public class LogViewer extends ViewPart {
         while(keyIterator.hasNext()) {
             Object key = keyIterator.next();
             LogFileTab tab = logTab.get(key);
-            tab.getDocument().setMonitor(true);
+            tab.setMonitor(true);
         }
         setMonitorCounterToMax();
         updateTailStartStopButtons(true);
+        // the tabs which are not loaded yet need their tail now
+        scheduleTabLoading();
     }
 
     public void stopTailOnAllDocuments() {
@@ -266,7 +292,7 @@ public class LogViewer extends ViewPart {
         while(keyIterator.hasNext()) {
             Object key = keyIterator.next();
             LogFileTab tab = logTab.get(key);
-            tab.getDocument().setMonitor(false);
+            tab.setMonitor(false);
 
         }
         setMonitorCounterToMin();
@@ -293,6 +319,18 @@ public class LogViewer extends ViewPart {
         }
     }
 
+    /**
+     * holds back or releases the updates of the current document
+     */
+    public void toggleScrollLock() {
+        LogFileTab tab = getSelectedTab();
+        if(tab == null) {
+            return;
+        }
+        // the document reports the change to the scroll lock listener
+        tab.getDocument().setScrollLock(!tab.getDocument().isScrollLocked());
+    }
+
     boolean greyAllOutIfNoFiles() {
         if(tabfolder.getItemCount() == 0) {
             fileCloseAction.setEnabled(false);
@@ -305,6 +343,9 @@ public class LogViewer extends ViewPart {
             stopTailOnAllFiles.setEnabled(false);
             tabRenameAction.setEnabled(false);
             fileClearAction.setEnabled(false);
+            goToLineAction.setEnabled(false);
+            scrollLockAction.setEnabled(false);
+            updateScrollLockState();
             resetMonitorCounter();
             return true;
         }
@@ -327,6 +368,22 @@ public class LogViewer extends ViewPart {
         }
     }
 
+    /**
+     * shows the scroll lock of the current document and the number of lines
+     * it holds back
+     */
+    void updateScrollLockState() {
+        LogFileTab tab = getSelectedTab();
+        LogDocument document = tab != null ? tab.getDocument() : null;
+        boolean locked = document != null && document.isScrollLocked();
+        scrollLockAction.setChecked(locked);
+        if(locked) {
+            setContentDescription(LogViewerPlugin.getResourceString("scrolllock.newlines",new Object[] {Integer.valueOf(document.getBufferedLines())})); //$NON-NLS-1$
+        } else {
+            setContentDescription(""); //$NON-NLS-1$
+        }
+    }
+
     public boolean hasLogFile(LogFile file) {
         if(file == null) {
             return false;
@@ -391,42 +448,13 @@ public class LogViewer extends ViewPart {
     public void openLogFile(LogFile file) {
         String key = file.getKey();
         if(!logTab.containsKey(key)) {
-            try {
-                if (file.getNamePattern().equals(LogViewerPlugin.getResourceString("logviewer.plugin.console.name"))) {
-                	 createConsole();
-                }
-
-                String encoding = LogViewerPlugin.getDefault().getPreferenceStore().getString(ILogViewerConstants.PREF_ENCODING);
-                LogDocument document = new LogDocument(file,encoding);
-                TabItem item = new TabItem(tabfolder,0);
-                item.setControl(viewer.getControl());
-                item.setText(file.getNamePattern());
-                item.setToolTipText(file.getPath());
-                logTab.put(key,new LogFileTab(key,item,document));
-                document.addDocumentListener(documentListener);
-
-                // restore monitor status
-                boolean monitorState = file.getMonitor();
-                document.setMonitor(monitorState);
-                addMonitorCounter(monitorState);
-                updateTailStartStopButtons(monitorState);
-
-                refreshCurrentFileAction.setEnabled(true);
-                fileEncodingAction.setEnabled(true);
-                fileCloseAction.setEnabled(true);
-                closeAllFilesAction.setEnabled(true);
-                tabRenameAction.setEnabled(true);
-                startTailOnAllFiles.setEnabled(true);
-                stopTailOnAllFiles.setEnabled(true);
-                fileClearAction.setEnabled(true);
-            } catch(Exception e) {
-                logger.logError("unable to open the selected logfile",e); //$NON-NLS-1$
-                LogViewerPlugin.getDefault().showErrorMessage(LogViewerPlugin.getResourceString("main.error.open.file",new String[]{file.getPath()})); //$NON-NLS-1$
-                return;
-            }
+            addTab(file);
         }
         // show active document
         LogFileTab tab = logTab.get(key);
+        if(!tab.isLoaded() && !loadTab(tab)) {
+            return;
+        }
         try {
             showDocument(tab.getDocument(),null,0,true);
             tabfolder.setSelection(new TabItem[] {tab.getItem()});
@@ -444,6 +472,95 @@ public class LogViewer extends ViewPart {
             refreshCurrentLogFile();
     }
 
+    /**
+     * adds a tab for the file without loading its document yet
+     */
+    private LogFileTab addTab(LogFile file) {
+        TabItem item = new TabItem(tabfolder,0);
+        item.setControl(viewer.getControl());
+        item.setText(file.getNamePattern());
+        item.setToolTipText(file.getPath());
+        LogFileTab tab = new LogFileTab(file.getKey(),item,file);
+        logTab.put(tab.getKey(),tab);
+        addMonitorCounter(file.getMonitor());
+
+        refreshCurrentFileAction.setEnabled(true);
+        fileEncodingAction.setEnabled(true);
+        fileCloseAction.setEnabled(true);
+        closeAllFilesAction.setEnabled(true);
+        tabRenameAction.setEnabled(true);
+        goToLineAction.setEnabled(true);
+        scrollLockAction.setEnabled(true);
+        startTailOnAllFiles.setEnabled(true);
+        stopTailOnAllFiles.setEnabled(true);
+        fileClearAction.setEnabled(true);
+        return tab;
+    }
+
+    /**
+     * creates the document of the tab and starts its tail if the file is
+     * monitored. If that fails the tab is removed again.
+     * @return false if the tab was removed
+     */
+    private boolean loadTab(LogFileTab tab) {
+        LogFile file = tab.getFile();
+        try {
+            if (file.getNamePattern().equals(LogViewerPlugin.getResourceString("logviewer.plugin.console.name"))) {
+            	 createConsole();
+            }
+
+            String encoding = LogViewerPlugin.getDefault().getPreferenceStore().getString(ILogViewerConstants.PREF_ENCODING);
+            LogDocument document = new LogDocument(file,encoding);
+            document.addDocumentListener(documentListener);
+            document.addScrollLockListener(scrollLockListener);
+            tab.setDocument(document);
+
+            // restore monitor status
+            document.setMonitor(file.getMonitor());
+            return true;
+        } catch(Exception e) {
+            logger.logError("unable to open the selected logfile",e); //$NON-NLS-1$
+            LogViewerPlugin.getDefault().showErrorMessage(LogViewerPlugin.getResourceString("main.error.open.file",new String[]{file.getPath()})); //$NON-NLS-1$
+            removeMonitorCounter(file.getMonitor());
+            logTab.remove(tab.getKey());
+            tab.getItem().dispose();
+            if (!greyAllOutIfNoFiles()) {
+                // the selection may have moved to a tab which is not loaded
+                Event event = new Event();
+                event.item = getSelectedItem();
+                tabfolder.notifyListeners(SWT.Selection, event);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * loads the monitored tabs which were not selected yet one by one, so their
+     * tails run without blocking the view while it is opened
+     */
+    private void scheduleTabLoading() {
+        if(tabLoadingScheduled || !isAvailable()) {
+            return;
+        }
+        tabLoadingScheduled = true;
+        viewer.getControl().getDisplay().timerExec(ILogViewerConstants.TAB_LOADING_INTERVAL, new Runnable() {
+            public void run() {
+                tabLoadingScheduled = false;
+                if(!isAvailable()) {
+                    return;
+                }
+                for(Iterator<LogFileTab> iter = logTab.values().iterator(); iter.hasNext();) {
+                    LogFileTab tab = iter.next();
+                    if(!tab.isLoaded() && tab.getFile().getMonitor()) {
+                        loadTab(tab);
+                        scheduleTabLoading();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
     public boolean isAvailable() {
         return viewer != null && viewer.getControl() != null && !viewer.getControl().isDisposed();
     }
@@ -480,6 +597,26 @@ public class LogViewer extends ViewPart {
         return null;
     }
 
+    /**
+     * shows the page of the current document which starts with the given line
+     * @param line zero based line number in the file
+     */
+    public void goToLine(long line) {
+        LogDocument document = getSelectedTab().getDocument();
+        LineIndex index = document.getReader().getLineIndex();
+        if(index == null) {
+            return;
+        }
+        try {
+            long offset = index.getLineOffset(line);
+            if(offset >= 0 && document.loadPageAt(offset)) {
+                viewer.setTopIndex(0);
+            }
+        } catch(IOException e) {
+            logger.logError("unable to go to line " + (line + 1) + " of " + getCurrentLogFilePath(),e); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
     public String getCurrentLogFileTabName() {
         return getSelectedTab().getItem().getText();
     }
@@ -496,6 +633,16 @@ public class LogViewer extends ViewPart {
     public void dispose() {
         viewer.removeListeners();
         storeAllCurrentlyOpenFiles();
+        // stops the tails and releases the histories, tabs not loaded yet have none
+        for(Iterator<LogFileTab> iter = logTab.values().iterator(); iter.hasNext();) {
+            LogFileTab tab = iter.next();
+            try {
+                tab.close();
+            } catch(IOException e) {
+                logger.logError("unable to close tab: " + tab.getKey()); //$NON-NLS-1$
+            }
+        }
+        TailScheduler.shutdown();
         super.dispose();
     }
 
@@ -549,6 +696,8 @@ public class LogViewer extends ViewPart {
     private void fillLocalPullDown(IMenuManager manager) {
         LocalPullDownMenu menu = new LocalPullDownMenu(manager,this,parent.getShell());
         menu.addAction(fileOpenAction);
+        menu.addAction(mergedFileOpenAction);
+        menu.addAction(streamOpenAction);
         menu.addFilelist();
         menu.addAction(clearHistoryAction);
         menu.addAction(fileClearAction);
@@ -560,6 +709,8 @@ public class LogViewer extends ViewPart {
         menu.addSeparator();
         menu.addAction(fileEncodingAction);
         menu.addAction(tabRenameAction);
+        menu.addAction(goToLineAction);
+        menu.addAction(scrollLockAction);
         menu.addSeparator();
         menu.addAction(startTailOnAllFiles);
         menu.addAction(stopTailOnAllFiles);
@@ -579,6 +730,8 @@ public class LogViewer extends ViewPart {
         manager.add(new Separator());
         manager.add(fileEncodingAction);
         manager.add(tabRenameAction);
+        manager.add(goToLineAction);
+        manager.add(scrollLockAction);
         manager.add(new Separator(IWorkbenchActionConstants.MB_ADDITIONS));
     }
 
@@ -590,6 +743,7 @@ public class LogViewer extends ViewPart {
         manager.add(refreshCurrentFileAction);
         manager.add(startTailOnCurrentFile);
         manager.add(stopTailOnCurrentFile);
+        manager.add(scrollLockAction);
         manager.add(fileCloseAction);
         manager.add(new Separator());
         manager.add(startTailOnAllFiles);
@@ -599,6 +753,8 @@ public class LogViewer extends ViewPart {
     }
 
     protected void showDocument(LogDocument document, ISelection sel, int index, boolean monitor) {
+        // the other documents are shrunk first if the memory gets short
+        MemoryGovernor.getInstance().documentViewed(document);
         viewer.setDocument(document);
         if (monitor) {
             viewer.showTopOrBottomOfFile();
@@ -641,6 +797,12 @@ public class LogViewer extends ViewPart {
             // open
             fileOpenAction = new FileOpenViewAction(this,parent.getShell());
             fileOpenAction.setEnabled(true);
+            // open merged files
+            mergedFileOpenAction = new MergedFileOpenViewAction(this,parent.getShell());
+            mergedFileOpenAction.setEnabled(true);
+            // listen on a port
+            streamOpenAction = new StreamOpenViewAction(this,parent.getShell());
+            streamOpenAction.setEnabled(true);
             // clear history
             clearHistoryAction = new ClearHistoryAction(this,parent.getShell());
             clearHistoryAction.setEnabled(true);
@@ -677,6 +839,12 @@ public class LogViewer extends ViewPart {
             // clear file
             fileClearAction = new FileClearAction(this,parent.getShell());
             fileClearAction.setEnabled(true);
+            // go to line
+            goToLineAction = new GoToLineAction(this,parent.getShell());
+            goToLineAction.setEnabled(false);
+            // scroll lock
+            scrollLockAction = new ScrollLockAction(this,parent.getShell());
+            scrollLockAction.setEnabled(false);
     }
 
     private void storeAllCurrentlyOpenFiles() {
@@ -685,19 +853,32 @@ public class LogViewer extends ViewPart {
         while(keyIterator.hasNext()) {
             Object key = keyIterator.next();
             LogFileTab tab = logTab.get(key);
-            LogFile logFile = tab.getDocument().getFile();
+            LogFile logFile = tab.getFile();
             fileList.add(logFile);
         }
         LogViewerPlugin.getDefault().getPreferenceStore().setValue(ILogViewerConstants.PREF_LAST_OPEN_FILES,PreferenceValueConverter.asLogFileListString(fileList));
     }
 
+    /**
+     * restores the tabs without loading them, only the last one is shown. The
+     * others are loaded when they are selected, monitored ones in the
+     * background after the view is visible.
+     */
     private void openAllLastOpenFiles() {
         List<?> logFiles = PreferenceValueConverter.asLogFileList(LogViewerPlugin.getDefault().getPreferenceStore().getString(ILogViewerConstants.PREF_LAST_OPEN_FILES));
         Iterator<?> it = logFiles.iterator();
+        LogFile lastFile = null;
         while(it.hasNext()) {
             LogFile logFile = (LogFile)it.next();
-            openLogFile(logFile);
+            if(!logTab.containsKey(logFile.getKey())) {
+                addTab(logFile);
+            }
+            lastFile = logFile;
         }
+        if(lastFile != null) {
+            openLogFile(lastFile);
+        }
+        scheduleTabLoading();
     }
 
     private void createConsole() {
@@ -719,6 +900,14 @@ public class LogViewer extends ViewPart {
                 if(!isAvailable()) {
                     return;
                 }
+                if(event.getDocument() instanceof LogDocument && !((LogDocument)event.getDocument()).isFollowingTail()) {
+                    // paging through the file, not an update of the tail
+                    return;
+                }
+                if(event.getDocument() instanceof LogDocument && ((LogDocument)event.getDocument()).isTrimming()) {
+                    // the lines dropped for the backlog, the append was shown already
+                    return;
+                }
 
                 LogFileTab tab = getSelectedTab();
 
@@ -753,10 +942,10 @@ public class LogViewer extends ViewPart {
                 }
 
                 if(logTab != null && event.getDocument() == tab.getDocument() && viewer.getDocument() != null) {
-                    viewer.refresh();
                     viewer.showBottomOfFile();
                 }
-                if (stopAfterChange) {
+                // clearing the document does not count, stop once the content is read again
+                if (stopAfterChange && event.getText() != null && event.getText().length() > 0) {
                     stopAfterChange = false;
                     stopTail();
                 }
@@ -766,6 +955,19 @@ public class LogViewer extends ViewPart {
             }
     }
 
+    private class ViewScrollLockListener implements IScrollLockListener {
+
+        /* (non-Javadoc)
+         * @see de.anbos.eclipse.logviewer.plugin.file.document.IScrollLockListener#bufferChanged(de.anbos.eclipse.logviewer.plugin.file.document.LogDocument, int)
+         */
+        public void bufferChanged(LogDocument document, int lines) {
+            LogFileTab tab = getSelectedTab();
+            if(isAvailable() && tab != null && tab.getDocument() == document) {
+                updateScrollLockState();
+            }
+        }
+    }
+
     private class TabSelectionListener implements SelectionListener {
 
         /* (non-Javadoc)
@@ -783,7 +985,11 @@ public class LogViewer extends ViewPart {
             }
             // get new
             LogFileTab tab = getSelectedTab(item);
-            if(tab == null || tab.getDocument() == null) {
+            if(tab == null) {
+                return;
+            }
+            boolean loaded = tab.isLoaded();
+            if(!loaded && !loadTab(tab)) {
                 return;
             }
             // save old selection
@@ -801,6 +1007,10 @@ public class LogViewer extends ViewPart {
             refreshCurrentFileAction.setEnabled(true);
             // set act tab item
             oldTabItem = item;
+            updateScrollLockState();
+            // a restored tab is selected for the first time
+            if (!loaded && !tab.isMonitor())
+                refreshCurrentLogFile();
         }
     }
 }
@@ -22,49 +22,56 @@ import org.eclipse.ui.console.IOConsole;
 import org.eclipse.ui.console.IOConsoleInputStream;
 import org.eclipse.ui.console.IOConsoleOutputStream;
 
-public class LogViewerConsole extends IOConsole implements Runnable {
+import de.anbos.eclipse.logviewer.plugin.file.ITailSource;
+import de.anbos.eclipse.logviewer.plugin.file.TailScheduler;
+import de.anbos.eclipse.logviewer.plugin.file.TailTask;
+
+public class LogViewerConsole extends IOConsole implements ITailSource {
 
     private IOConsoleOutputStream outStream;
     private IOConsoleInputStream inStream;
-    private boolean isRunning; 
+    private volatile TailTask task;
+    private int readwait;
     	
 	public LogViewerConsole(String name, ImageDescriptor imageDescriptor) {
 		super(name, imageDescriptor);
 		outStream = null;
 	}
 
-	public void run() {
-		isRunning = true;
+	public void start() {
+		readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
+		inStream = getInputStream();
+	}
+
+	public long poll() {
 		try {
-			int readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
-			inStream = getInputStream();
-			while(isRunning) {
-				int available = inStream.available();
-				if (available > 0) {
-					byte[] readed = new byte[available];
-					inStream.read(readed, 0, available);
-					outStream.write(readed);
-					//continue;
-				}
-				wait(readwait);
+			int available = inStream.available();
+			if (available > 0) {
+				byte[] readed = new byte[available];
+				inStream.read(readed, 0, available);
+				outStream.write(readed);
 			}
-		} catch(InterruptedException ie) {
+			return readwait;
 		} catch(NullPointerException npe) {
 		} catch (IOException e) {
-		} finally {
 		}
-		isRunning = false;
+		return STOP;
+	}
+
+	public void stop() {
 	}
 
 	public void setMonitorStatus(boolean monitor) {
+        TailTask current = task;
+        boolean isRunning = current != null && current.isActive();
         if(isRunning == monitor) {
             return;
         }
-        isRunning = monitor;
-        if(isRunning) {
-            Thread tailThread = new Thread(this);
-            tailThread.setDaemon(true);
-            tailThread.start();
+        if(monitor) {
+            task = TailScheduler.getInstance().schedule(this);
+        } else {
+            task = null;
+            current.cancel();
         }
 	}
 
@@ -13,6 +13,8 @@ import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
+import de.anbos.eclipse.logviewer.plugin.file.TailScheduler;
+
 /*
  * Copyright (c) 2007 - 2011 by Michael Mimo Moratti
  * Licensed under the Apache License, Version 2.0 (the &quot;License&quot;);
@@ -103,6 +105,7 @@ public class LogViewerPlugin extends AbstractUIPlugin {
 	 * This method is called when the plug-in is stopped
 	 */
 	public void stop(BundleContext context) throws Exception {
+		TailScheduler.shutdown();
 		super.stop(context);
 	}
 	
@@ -155,8 +158,15 @@ public class LogViewerPlugin extends AbstractUIPlugin {
 
     private void loadDefaultPluginPreferences(IPreferenceStore store) {
 		store.setDefault(ILogViewerConstants.PREF_BACKLOG,ILogViewerConstants.DEFAULT_BACKLOG);
+		store.setDefault(ILogViewerConstants.PREF_BACKLOG_SIZE,ILogViewerConstants.DEFAULT_BACKLOG_SIZE);
+		store.setDefault(ILogViewerConstants.PREF_MEMORY_BUDGET,ILogViewerConstants.DEFAULT_MEMORY_BUDGET);
 		store.setDefault(ILogViewerConstants.PREF_BUFFER,ILogViewerConstants.DEFAULT_BUFFER_CAPACITY);
 		store.setDefault(ILogViewerConstants.PREF_READWAIT,ILogViewerConstants.DEFAULT_READWAIT_SIZE);
+		store.setDefault(ILogViewerConstants.PREF_UI_UPDATE_RATE,ILogViewerConstants.DEFAULT_UI_UPDATE_RATE);
+		store.setDefault(ILogViewerConstants.PREF_WATCH_FILES,ILogViewerConstants.DEFAULT_WATCH_FILES);
+		store.setDefault(ILogViewerConstants.PREF_PAGED_FILES,ILogViewerConstants.DEFAULT_PAGED_FILES);
+		store.setDefault(ILogViewerConstants.PREF_SPILL_HISTORY,ILogViewerConstants.DEFAULT_SPILL_HISTORY);
+		store.setDefault(ILogViewerConstants.PREF_COMPRESS_HISTORY,ILogViewerConstants.DEFAULT_COMPRESS_HISTORY);
 		store.setDefault(ILogViewerConstants.PREF_ENCODING,System.getProperty("file.encoding"));
 		store.setDefault(ILogViewerConstants.PREF_WORD_WRAP,ILogViewerConstants.DEAFULT_WORD_WRAP);
 		store.setDefault(ILogViewerConstants.PREF_SHOW_WHEN_UPDATED,ILogViewerConstants.DEAFULT_SHOW_WHEN_UPDATED);
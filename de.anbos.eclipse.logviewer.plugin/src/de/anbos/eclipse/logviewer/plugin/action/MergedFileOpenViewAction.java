@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.action;
+
+import org.eclipse.swt.widgets.Shell;
+
+import de.anbos.eclipse.logviewer.plugin.LogViewer;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.action.delegate.MergedFileOpenActionDelegate;
+
+public class MergedFileOpenViewAction extends AbstractViewAction {
+
+	// Constructor -------------------------------------------------------------
+
+	public MergedFileOpenViewAction(LogViewer view, Shell shell) {
+		super(view,shell,new MergedFileOpenActionDelegate());
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.action.AbstractViewAction#init()
+	 */
+	public void init() {
+		this.setText(LogViewerPlugin.getResourceString("menu.file.openmerged.text")); //$NON-NLS-1$
+		this.setToolTipText(LogViewerPlugin.getResourceString("menu.file.openmerged.tooltip")); //$NON-NLS-1$
+	}
+}
@@ -14,6 +14,7 @@ package de.anbos.eclipse.logviewer.plugin.action.delegate;
 
 import java.io.File;
 
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Shell;
@@ -103,6 +104,21 @@ public class FileOpenViewActionDelegate implements ILogViewerActionDelegate {
 		    	File tempFile = new File(path);
 		    	path = tempFile.isDirectory() ? tempFile.toString() : tempFile.getParent();
 		    	String selectedFiles[] = dialog.getFileNames();
+		    	if (selectedFiles.length > 1 && MessageDialog.openQuestion(shell,
+		    			LogViewerPlugin.getResourceString("dialog.merge.title"), //$NON-NLS-1$
+		    			LogViewerPlugin.getResourceString("dialog.merge.text"))) { //$NON-NLS-1$
+		    		// one tab with the lines of all files in timestamp order
+		    		StringBuilder paths = new StringBuilder();
+		    		for (int i=0;i<selectedFiles.length;i++) {
+		    			if (i > 0) {
+		    				paths.append(ILogViewerConstants.MERGED_PATH_DELIMITER);
+		    			}
+		    			paths.append(path.endsWith(File.separator) ? path + selectedFiles[i] : path + File.separator + selectedFiles[i]);
+		    		}
+		    		if (!view.checkAndOpenFile(LogFileType.LOGFILE_MERGED, paths.toString(), null, true))
+		    			fileOpened = true;
+		    		return;
+		    	}
 		    	for (int i=0;i<selectedFiles.length;i++) {
 		    		String fileStr = path.endsWith(File.separator) ? path + selectedFiles[i] : path + File.separator + selectedFiles[i];
 		    		if (!view.checkAndOpenFile(type,fileStr, null, true))
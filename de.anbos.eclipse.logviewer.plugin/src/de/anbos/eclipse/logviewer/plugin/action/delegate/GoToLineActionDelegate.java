@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.action.delegate;
+
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+
+import de.anbos.eclipse.logviewer.plugin.LogViewer;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.file.LineIndex;
+import de.anbos.eclipse.logviewer.plugin.file.document.LogDocument;
+
+public class GoToLineActionDelegate implements ILogViewerActionDelegate {
+
+	// Public ------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.action.delegate.ILogViewerActionDelegate#run(de.anbos.eclipse.logviewer.plugin.LogViewer, org.eclipse.swt.widgets.Shell)
+	 */
+	public void run(LogViewer view, Shell shell) {
+		String title = LogViewerPlugin.getResourceString("dialog.gotoline.title"); //$NON-NLS-1$
+		LogDocument document = view.getCurrentDocument();
+		LineIndex index = document != null ? document.getReader().getLineIndex() : null;
+		if(index == null || !document.isPaged()) {
+			MessageDialog.openInformation(shell,title,LogViewerPlugin.getResourceString("dialog.gotoline.unavailable")); //$NON-NLS-1$
+			return;
+		}
+		// the last line does not need to end with a line feed
+		final long lines = index.getLineCount() + 1;
+		InputDialog dialog = new InputDialog(shell,title,
+				LogViewerPlugin.getResourceString("dialog.gotoline.text",new String[]{Long.toString(lines)}), //$NON-NLS-1$
+				"",new LineNumberValidator(lines)); //$NON-NLS-1$
+		if(dialog.open() == Window.OK) {
+			view.goToLine(Long.parseLong(dialog.getValue().trim()) - 1);
+		}
+	}
+
+	// Inner classes -----------------------------------------------------------
+
+	private static class LineNumberValidator implements IInputValidator {
+
+		private long lines;
+
+		private LineNumberValidator(long lines) {
+			this.lines = lines;
+		}
+
+		public String isValid(String newText) {
+			try {
+				long line = Long.parseLong(newText.trim());
+				if(line >= 1 && line <= lines) {
+					return null;
+				}
+			} catch(NumberFormatException e) {
+				// reported below
+			}
+			return LogViewerPlugin.getResourceString("dialog.gotoline.invalid",new String[]{Long.toString(lines)}); //$NON-NLS-1$
+		}
+	}
+}
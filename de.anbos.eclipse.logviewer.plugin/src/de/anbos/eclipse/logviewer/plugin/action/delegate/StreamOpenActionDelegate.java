@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.action.delegate;
+
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+
+import de.anbos.eclipse.logviewer.plugin.LogFile.LogFileType;
+import de.anbos.eclipse.logviewer.plugin.LogViewer;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.file.StreamTail;
+
+public class StreamOpenActionDelegate implements ILogViewerActionDelegate {
+
+	// Public ------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.action.delegate.ILogViewerActionDelegate#run(de.anbos.eclipse.logviewer.plugin.LogViewer, org.eclipse.swt.widgets.Shell)
+	 */
+	public void run(LogViewer view, Shell shell) {
+		InputDialog dialog = new InputDialog(shell,
+				LogViewerPlugin.getResourceString("dialog.openstream.title"), //$NON-NLS-1$
+				LogViewerPlugin.getResourceString("dialog.openstream.text"), //$NON-NLS-1$
+				"tcp://:4560",new IInputValidator() { //$NON-NLS-1$
+					public String isValid(String newText) {
+						return StreamTail.parseAddress(newText) != null ? null : LogViewerPlugin.getResourceString("dialog.openstream.invalid"); //$NON-NLS-1$
+					}
+				});
+		if(dialog.open() == Window.OK) {
+			view.checkAndOpenFile(LogFileType.LOGFILE_STREAM,dialog.getValue().trim(),null,true);
+		}
+	}
+}
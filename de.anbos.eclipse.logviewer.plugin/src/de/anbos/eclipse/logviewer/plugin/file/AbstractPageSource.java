@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Line alignment and decoding for page sources which can read arbitrary byte
+ * ranges. Only charsets which encode '\n' as the single byte 0x0A are supported.
+ */
+public abstract class AbstractPageSource implements IPageSource {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final byte LINE_FEED = 0x0A;
+
+	// Attribute ---------------------------------------------------------------
+
+	private Charset charset;
+
+	// Constructor -------------------------------------------------------------
+
+	protected AbstractPageSource(Charset charset) {
+		this.charset = charset;
+	}
+
+	// Static ------------------------------------------------------------------
+
+	/**
+	 * @return true if line starts can be found by searching for the byte 0x0A
+	 */
+	public static boolean isLineAligned(Charset charset) {
+		if(!charset.canEncode()) {
+			return false;
+		}
+		try {
+			ByteBuffer lineFeed = charset.newEncoder().encode(CharBuffer.wrap("\n")); //$NON-NLS-1$
+			return lineFeed.remaining() == 1 && lineFeed.get(0) == LINE_FEED;
+		} catch(CharacterCodingException e) {
+			return false;
+		}
+	}
+
+	// Public ------------------------------------------------------------------
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IPageSource#readBefore(long, int)
+	 */
+	public Page readBefore(long end, int pageSize) throws IOException {
+		if(end <= 0) {
+			return null;
+		}
+		long start = Math.max(0, end - pageSize);
+		return readRange(start, end, start > 0, false);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IPageSource#readAfter(long, int, long)
+	 */
+	public Page readAfter(long start, int pageSize, long limit) throws IOException {
+		if(start >= limit) {
+			return null;
+		}
+		long end = Math.min(Math.min(limit, getSize()), start + pageSize);
+		if(end <= start) {
+			return null;
+		}
+		return readRange(start, end, false, end < limit);
+	}
+
+	/**
+	 * reads the complete lines within [start, end), a partial line at the end is
+	 * left out
+	 * @param alignStart true to leave out a partial line at the start, too
+	 * @return the page or null if the range does not contain a line end
+	 */
+	public Page readLines(long start, long end, boolean alignStart) throws IOException {
+		if(end <= start) {
+			return null;
+		}
+		ByteBuffer buffer = read(start, (int)(end - start));
+		if(alignStart) {
+			buffer.position(indexOfLineFeed(buffer) + 1);
+		}
+		int lineEnd = lastIndexOfLineFeed(buffer) + 1;
+		if(lineEnd <= buffer.position()) {
+			return null;
+		}
+		buffer.limit(lineEnd);
+		return new Page(start + buffer.position(), start + lineEnd, decode(buffer));
+	}
+
+	// Protected ---------------------------------------------------------------
+
+	/**
+	 * @return the number of bytes which can be read
+	 */
+	protected abstract long getSize() throws IOException;
+
+	/**
+	 * @return a buffer with the bytes [start, start + length) between position 0 and its limit
+	 */
+	protected abstract ByteBuffer read(long start, int length) throws IOException;
+
+	// Private -----------------------------------------------------------------
+
+	/**
+	 * reads [start, end), optionally without the partial lines at the start and
+	 * the end. A range which is a single partial line is read as it is.
+	 */
+	private Page readRange(long start, long end, boolean alignStart, boolean alignEnd) throws IOException {
+		ByteBuffer buffer = read(start, (int)(end - start));
+		if(alignStart) {
+			int lineStart = indexOfLineFeed(buffer) + 1;
+			if(lineStart > 0 && lineStart < buffer.limit()) {
+				buffer.position(lineStart);
+			}
+		}
+		if(alignEnd) {
+			int lineEnd = lastIndexOfLineFeed(buffer) + 1;
+			if(lineEnd > buffer.position()) {
+				buffer.limit(lineEnd);
+			}
+		}
+		return new Page(start + buffer.position(), start + buffer.limit(), decode(buffer));
+	}
+
+	private String decode(ByteBuffer buffer) throws CharacterCodingException {
+		CharsetDecoder decoder = charset.newDecoder();
+		decoder.onMalformedInput(CodingErrorAction.REPLACE);
+		decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		return decoder.decode(buffer).toString();
+	}
+
+	private int indexOfLineFeed(ByteBuffer buffer) {
+		for(int i = buffer.position(); i < buffer.limit(); i++) {
+			if(buffer.get(i) == LINE_FEED) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int lastIndexOfLineFeed(ByteBuffer buffer) {
+		for(int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+			if(buffer.get(i) == LINE_FEED) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.Logger;
+
+/**
+ * Streams the decompressed content of a .gz file or of all entries of a .zip
+ * file. Everything is inflated on the scheduler into a CompressedBlockStore at
+ * full speed, the listener gets the latest complete lines at most every read
+ * wait milliseconds. Anything skipped in between is reached through paging.
+ */
+public class ArchiveTail implements ITailSource {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final int STREAM_BUFFER_SIZE = 65536;
+
+	// Attribute ---------------------------------------------------------------
+
+	private Logger logger;
+	private String filePath;
+	private Charset charset;
+	private IFileChangedListener listener;
+	private volatile TailTask task;
+
+	private CompressedBlockStore store;
+	private InputStream in;
+	private ZipInputStream zip;
+	private byte[] readBuffer;
+	private boolean isFirstTimeRead;
+	private boolean isOpenWarningShown;
+
+	private int deliverySize;
+	private int readwait;
+	private long deliveredEnd;
+	private long lastDelivery;
+
+	// Constructor -------------------------------------------------------------
+
+	public ArchiveTail(String filePath, Charset charset, IFileChangedListener listener) {
+		logger = LogViewerPlugin.getDefault().getLogger();
+		this.filePath = filePath;
+		this.charset = charset;
+		this.listener = listener;
+		store = new CompressedBlockStore(charset);
+	}
+
+	// Static ------------------------------------------------------------------
+
+	/**
+	 * @return true if the file is read through an ArchiveTail
+	 */
+	public static boolean isArchive(String path) {
+		String lowerPath = path.toLowerCase(Locale.ENGLISH);
+		return lowerPath.endsWith(".gz") || lowerPath.endsWith(".zip"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	// Public ------------------------------------------------------------------
+
+	public void setMonitorStatus(boolean monitor) {
+		TailTask current = task;
+		boolean isRunning = current != null && current.isActive();
+		if(isRunning == monitor) {
+			return;
+		}
+		if(monitor) {
+			task = TailScheduler.getInstance().schedule(this);
+		} else {
+			task = null;
+			current.cancel();
+		}
+	}
+
+	/**
+	 * @return the decompressed content for paging, null if the charset does not
+	 * allow line aligned pages
+	 */
+	public IPageSource getPageSource() {
+		return AbstractPageSource.isLineAligned(charset) ? store : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#start()
+	 */
+	public void start() {
+		readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
+		deliverySize = Math.max(ILogViewerConstants.TAIL_MIN_READ_SIZE, LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_BUFFER));
+		readBuffer = new byte[STREAM_BUFFER_SIZE];
+		store.clear();
+		deliveredEnd = 0;
+		lastDelivery = 0;
+		isOpenWarningShown = false;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#poll()
+	 */
+	public long poll() {
+		try {
+			if(in == null && !openArchive()) {
+				return ILogViewerConstants.TAIL_FILEOPEN_ERROR_WAIT;
+			}
+			int count = in.read(readBuffer);
+			if(count < 0) {
+				if(zip != null && nextEntry()) {
+					return 0;
+				}
+				// an archive does not grow, show the rest and wait for the cancel
+				deliver(true);
+				closeArchive();
+				return IDLE;
+			}
+			store.append(readBuffer, 0, count);
+			// while the view is behind the content is kept in the store
+			if(System.currentTimeMillis() - lastDelivery >= readwait && listener.isReady()) {
+				deliver(false);
+			}
+			return 0;
+		} catch(IOException ioe) {
+			logger.logError(ioe);
+			listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.error",new String[]{filePath}).toCharArray(),true);
+		}
+		return STOP;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#stop()
+	 */
+	public void stop() {
+		// the store stays for paging until the next start
+		closeArchive();
+		readBuffer = null;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private boolean openArchive() throws IOException {
+		InputStream fileIn;
+		try {
+			fileIn = new BufferedInputStream(new FileInputStream(filePath), STREAM_BUFFER_SIZE);
+		} catch(FileNotFoundException fnfe) {
+			if(!isOpenWarningShown) {
+				listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.warning",new String[]{filePath}).toCharArray(),true);
+				isOpenWarningShown = true;
+			}
+			return false;
+		}
+		listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file",new String[]{filePath}).toCharArray(),true);
+		isFirstTimeRead = true;
+		if(filePath.toLowerCase(Locale.ENGLISH).endsWith(".zip")) { //$NON-NLS-1$
+			zip = new ZipInputStream(fileIn, charset);
+			if(!nextEntry()) {
+				in = zip;
+			}
+		} else {
+			// reads concatenated gzip members, too
+			in = new GZIPInputStream(fileIn, STREAM_BUFFER_SIZE);
+		}
+		return true;
+	}
+
+	/**
+	 * moves on to the next file entry of the zip and stores a line with its name
+	 * @return false if there are no more entries
+	 */
+	private boolean nextEntry() throws IOException {
+		ZipEntry entry;
+		while((entry = zip.getNextEntry()) != null) {
+			if(entry.isDirectory()) {
+				continue;
+			}
+			in = zip;
+			String header = LogViewerPlugin.getResourceString("tail.loading.archive.entry",new String[]{entry.getName()}); //$NON-NLS-1$
+			ByteBuffer bytes = charset.encode(header);
+			store.append(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * hands the stored content behind the last delivery to the listener. If that
+	 * is more than a read buffer only the last part is delivered.
+	 * @param complete true at the end of the archive, a partial last line is
+	 * delivered then
+	 */
+	private void deliver(boolean complete) throws IOException {
+		long end = store.getLength();
+		if(end <= deliveredEnd) {
+			return;
+		}
+		boolean skip = end - deliveredEnd > deliverySize;
+		IPageSource.Page page;
+		if(complete) {
+			page = skip ? store.readBefore(end, deliverySize) : store.readAfter(deliveredEnd, deliverySize, end);
+		} else {
+			long start = skip ? end - deliverySize : deliveredEnd;
+			page = store.readLines(start, end, skip);
+			if(page == null && skip) {
+				// a single line longer than the read buffer
+				page = store.readAfter(start, deliverySize, end);
+			}
+		}
+		if(page == null) {
+			return;
+		}
+		listener.contentAboutToBeChanged();
+		listener.filePositionChanged(page.getStart(), page.getEnd());
+		listener.fileChanged(page.getText().toCharArray(), isFirstTimeRead);
+		isFirstTimeRead = false;
+		deliveredEnd = page.getEnd();
+		lastDelivery = System.currentTimeMillis();
+	}
+
+	private void closeArchive() {
+		try {
+			if(in != null) {
+				in.close();
+			} else if(zip != null) {
+				zip.close();
+			}
+		} catch(IOException e) {
+			// ignore this
+		}
+		in = null;
+		zip = null;
+	}
+}
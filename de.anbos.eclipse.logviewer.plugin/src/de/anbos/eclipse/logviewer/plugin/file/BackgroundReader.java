@@ -24,30 +24,79 @@ import de.anbos.eclipse.logviewer.plugin.LogFile.LogFileType;
 public class BackgroundReader {
 
 	private FileTail fileTail;
+	private ArchiveTail archiveTail;
 	private ConsoleTail consoleTail;
+	private MergedTail mergedTail;
+	private StreamTail streamTail;
 	private LogFileType type;
 
 	public BackgroundReader(LogFileType type, String path, String namePattern, Charset charset, IFileChangedListener listener) throws SecurityException, IllegalArgumentException, ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException, PartInitException {
 		this.type = type;
 		if (type == LogFileType.LOGFILE_SYSTEM_FILE) {
-			fileTail = new FileTail(path, charset, listener);
+			if (ArchiveTail.isArchive(path)) {
+				archiveTail = new ArchiveTail(path, charset, listener);
+			} else {
+				fileTail = new FileTail(path, charset, listener);
+			}
 		} else if (type == LogFileType.LOGFILE_ECLIPSE_CONSOLE) {
 			consoleTail = new ConsoleTail(path, namePattern, listener);
+		} else if (type == LogFileType.LOGFILE_MERGED) {
+			mergedTail = new MergedTail(path, charset, listener);
+		} else if (type == LogFileType.LOGFILE_STREAM) {
+			streamTail = new StreamTail(path, charset, listener);
 		}
 	}
 
 	public void setMonitorStatus(boolean monitor) {
-		if (type == LogFileType.LOGFILE_SYSTEM_FILE) {
+		if (archiveTail != null) {
+			archiveTail.setMonitorStatus(monitor);
+		} else if (type == LogFileType.LOGFILE_SYSTEM_FILE) {
 			fileTail.setMonitorStatus(monitor);
 		} else if (type == LogFileType.LOGFILE_ECLIPSE_CONSOLE) {
 			consoleTail.setMonitorStatus(monitor);
+		} else if (type == LogFileType.LOGFILE_MERGED) {
+			mergedTail.setMonitorStatus(monitor);
+		} else if (type == LogFileType.LOGFILE_STREAM) {
+			streamTail.setMonitorStatus(monitor);
+		}
+	}
+
+	/**
+	 * @return the source for paging through the whole content, null if the
+	 * content can not be paged
+	 */
+	public IPageSource getPageSource() {
+		if (archiveTail != null) {
+			return archiveTail.getPageSource();
+		} else if (fileTail != null) {
+			return fileTail.getPageSource();
 		}
+		return null;
+	}
+
+	/**
+	 * @return the line index of the file, null if there is none
+	 */
+	public LineIndex getLineIndex() {
+		return fileTail != null ? fileTail.getLineIndex() : null;
 	}
 
 	public FileTail getFileTail() {
 		return fileTail;
 	}
 
+	public ArchiveTail getArchiveTail() {
+		return archiveTail;
+	}
+
+	public MergedTail getMergedTail() {
+		return mergedTail;
+	}
+
+	public StreamTail getStreamTail() {
+		return streamTail;
+	}
+
 	public ConsoleTail getConsoleTail() {
 		return consoleTail;
 	}
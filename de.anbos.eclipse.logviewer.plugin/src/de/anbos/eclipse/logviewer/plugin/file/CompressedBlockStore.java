@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append only byte store which deflates every block of bytes independently,
+ * either into a temporary file or into memory. Each block is a checkpoint: any
+ * offset can be read by inflating a single block instead of the whole stream
+ * in front of it. The not yet completed last block stays uncompressed.
+ */
+public class CompressedBlockStore extends AbstractPageSource implements IHistoryStore {
+
+	// Constant ----------------------------------------------------------------
+
+	public static final int BLOCK_SIZE = 1024 * 1024;
+
+	// Attribute ---------------------------------------------------------------
+
+	private int blockSize;
+	private boolean inMemory;
+
+	private File blockFile;
+	private RandomAccessFile blocks;
+	private Deflater deflater;
+	private byte[] deflateBuffer;
+
+	/* offset of every completed block in the block file, plus the end */
+	private long[] blockOffsets;
+	/* the completed blocks if they are kept in memory */
+	private byte[][] memoryBlocks;
+	private long compressedSize;
+	private int blockCount;
+
+	private byte[] currentBlock;
+	private int currentLength;
+
+	/* last inflated block, pages are usually read close to each other */
+	private int cachedIndex;
+	private byte[] cachedBlock;
+
+	// Constructor -------------------------------------------------------------
+
+	/**
+	 * creates a store of BLOCK_SIZE blocks in a temporary file
+	 */
+	public CompressedBlockStore(Charset charset) {
+		this(charset, BLOCK_SIZE, false);
+	}
+
+	/**
+	 * @param inMemory true to keep the compressed blocks on the heap
+	 */
+	public CompressedBlockStore(Charset charset, int blockSize, boolean inMemory) {
+		super(charset);
+		this.blockSize = blockSize;
+		this.inMemory = inMemory;
+		currentBlock = new byte[blockSize];
+		blockOffsets = new long[64];
+		cachedIndex = -1;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	public synchronized void append(byte[] bytes, int offset, int length) throws IOException {
+		while(length > 0) {
+			int count = Math.min(length, blockSize - currentLength);
+			System.arraycopy(bytes, offset, currentBlock, currentLength, count);
+			currentLength += count;
+			offset += count;
+			length -= count;
+			if(currentLength == blockSize) {
+				writeBlock();
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#append(java.lang.String)
+	 */
+	public void append(String text) throws IOException {
+		ByteBuffer bytes = getCharset().encode(text);
+		append(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#getLength()
+	 */
+	public synchronized long getLength() {
+		return (long)blockCount * blockSize + currentLength;
+	}
+
+	/**
+	 * @return the bytes of the compressed blocks
+	 */
+	public synchronized long getCompressedSize() {
+		return compressedSize;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#getRetainedSize()
+	 */
+	public synchronized long getRetainedSize() {
+		long size = inMemory ? compressedSize : 0;
+		size += currentBlock != null ? currentBlock.length : 0;
+		size += cachedBlock != null ? cachedBlock.length : 0;
+		return size;
+	}
+
+	/**
+	 * drops all content and deletes the block file
+	 */
+	public synchronized void clear() {
+		if(blocks != null) {
+			try {
+				blocks.close();
+			} catch(IOException e) {
+				// ignore this
+			}
+			blocks = null;
+		}
+		if(blockFile != null) {
+			blockFile.delete();
+			blockFile = null;
+		}
+		if(deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+		memoryBlocks = null;
+		compressedSize = 0;
+		blockCount = 0;
+		currentLength = 0;
+		cachedIndex = -1;
+		cachedBlock = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#close()
+	 */
+	public void close() {
+		clear();
+	}
+
+	// Protected ---------------------------------------------------------------
+
+	protected synchronized long getSize() {
+		return getLength();
+	}
+
+	protected synchronized ByteBuffer read(long start, int length) throws IOException {
+		byte[] result = new byte[length];
+		int done = 0;
+		while(done < length) {
+			long position = start + done;
+			int index = (int)(position / blockSize);
+			int blockOffset = (int)(position % blockSize);
+			byte[] block;
+			int blockLength;
+			if(index < blockCount) {
+				block = inflateBlock(index);
+				blockLength = blockSize;
+			} else {
+				block = currentBlock;
+				blockLength = currentLength;
+			}
+			int count = Math.min(length - done, blockLength - blockOffset);
+			if(count <= 0) {
+				throw new IOException("read behind the end of the store"); //$NON-NLS-1$
+			}
+			System.arraycopy(block, blockOffset, result, done, count);
+			done += count;
+		}
+		return ByteBuffer.wrap(result);
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private void writeBlock() throws IOException {
+		if(deflater == null) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+			deflateBuffer = new byte[blockSize / 4];
+		}
+		if(blocks == null && !inMemory) {
+			blockFile = File.createTempFile("logviewer", ".blocks"); //$NON-NLS-1$ //$NON-NLS-2$
+			blockFile.deleteOnExit();
+			blocks = new RandomAccessFile(blockFile, "rw"); //$NON-NLS-1$
+		}
+		if(blockCount + 1 >= blockOffsets.length) {
+			blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+		}
+		deflater.reset();
+		deflater.setInput(currentBlock, 0, currentLength);
+		deflater.finish();
+		if(inMemory) {
+			if(memoryBlocks == null || blockCount == memoryBlocks.length) {
+				memoryBlocks = Arrays.copyOf(memoryBlocks != null ? memoryBlocks : new byte[0][], Math.max(64, blockCount * 2));
+			}
+			int length = 0;
+			while(!deflater.finished()) {
+				if(length == deflateBuffer.length) {
+					deflateBuffer = Arrays.copyOf(deflateBuffer, length * 2);
+				}
+				length += deflater.deflate(deflateBuffer, length, deflateBuffer.length - length);
+			}
+			memoryBlocks[blockCount] = Arrays.copyOf(deflateBuffer, length);
+			compressedSize += length;
+		} else {
+			long offset = blockOffsets[blockCount];
+			blocks.seek(offset);
+			while(!deflater.finished()) {
+				int count = deflater.deflate(deflateBuffer);
+				blocks.write(deflateBuffer, 0, count);
+				offset += count;
+			}
+			blockOffsets[blockCount + 1] = offset;
+			compressedSize = offset;
+		}
+		blockCount++;
+		currentLength = 0;
+	}
+
+	private byte[] inflateBlock(int index) throws IOException {
+		if(index == cachedIndex) {
+			return cachedBlock;
+		}
+		byte[] compressed;
+		if(inMemory) {
+			compressed = memoryBlocks[index];
+		} else {
+			compressed = new byte[(int)(blockOffsets[index + 1] - blockOffsets[index])];
+			blocks.seek(blockOffsets[index]);
+			blocks.readFully(compressed);
+		}
+		byte[] block = cachedBlock != null ? cachedBlock : new byte[blockSize];
+		cachedIndex = -1;
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			int length = 0;
+			while(length < blockSize && !inflater.finished()) {
+				int count = inflater.inflate(block, length, blockSize - length);
+				if(count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += count;
+			}
+			if(length != blockSize) {
+				throw new IOException("corrupt block " + index); //$NON-NLS-1$
+			}
+		} catch(DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		cachedIndex = index;
+		cachedBlock = block;
+		return block;
+	}
+}
@@ -42,7 +42,7 @@ import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
 import de.anbos.eclipse.logviewer.plugin.Logger;
 import de.anbos.eclipse.logviewer.plugin.ResourceUtils;
 
-public class ConsoleTail implements IDocumentListener, Runnable {
+public class ConsoleTail implements IDocumentListener, ITailSource {
 
     private Logger logger;
 	private String path;
@@ -51,8 +51,9 @@ public class ConsoleTail implements IDocumentListener, Runnable {
 	private IDocument doc;
 	private IConsole con;
 	private ITextViewer viewer;
-	private boolean isRunning;
+	private volatile TailTask task;
 	private boolean isFirstTimeRead;
+	private boolean isOpenWarningShown;
 	private Pattern regexp;
 
 	// Constructor -------------------------------------------------------------
@@ -67,7 +68,6 @@ public class ConsoleTail implements IDocumentListener, Runnable {
 		    this.namePattern = namePattern;
 		}
 		this.listener = listener;
-		isRunning = false;
 		isFirstTimeRead = true;
 		doc = null;
 	}
@@ -75,15 +75,17 @@ public class ConsoleTail implements IDocumentListener, Runnable {
 	// Public ------------------------------------------------------------------
 
 	public void setMonitorStatus(boolean monitor) {
-        if(isRunning == monitor) {
-            return;
-        }
-        isRunning = monitor;
-        if(isRunning) {
-            Thread tailThread = new Thread(this);
-            tailThread.setDaemon(true);
-            tailThread.start();
-        }
+		TailTask current = task;
+		boolean isRunning = current != null && current.isActive();
+		if(isRunning == monitor) {
+			return;
+		}
+		if(monitor) {
+			task = TailScheduler.getInstance().schedule(this);
+		} else {
+			task = null;
+			current.cancel();
+		}
 	}
 
 	public String getPath() {
@@ -112,10 +114,18 @@ public class ConsoleTail implements IDocumentListener, Runnable {
 		isFirstTimeRead = false;
 	}
 
-	public synchronized void run() {
-		isRunning = true;
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#start()
+	 */
+	public void start() {
+		isOpenWarningShown = false;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#poll()
+	 */
+	public long poll() {
 		try {
-			int readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
 			doc = openConsole();
 			if(doc != null) {
 				doc.addDocumentListener(this);
@@ -129,56 +139,49 @@ public class ConsoleTail implements IDocumentListener, Runnable {
 			} else {
 				throw new ThreadInterruptedException("document was null"); //$NON-NLS-1$
 			}
-			while(isRunning) {
-				wait(readwait);
+			// the console pushes its changes through the document listener
+			return IDLE;
+		} catch(FileNotFoundException fnfe) {
+			if (!isOpenWarningShown) {
+				listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.warning",new String[]{path}).toCharArray(),true);
+				isOpenWarningShown = true;
 			}
+			return ILogViewerConstants.TAIL_FILEOPEN_ERROR_WAIT;
 		} catch(ThreadInterruptedException tie) {
 			logger.logError(tie);
 			listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.error",new String[]{path}).toCharArray(),true);
-		} catch(InterruptedException ie) {
-			logger.logError(ie);
 		} catch(NullPointerException npe) {
 			logger.logError(npe);
 			npe.printStackTrace();
-		} finally {
-			try {
-				if(doc != null) {
-					doc.removeDocumentListener(this);
-					isFirstTimeRead = true;
-				}
-			} catch(Exception e) {
-				// ignore this
+		}
+		return STOP;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#stop()
+	 */
+	public void stop() {
+		try {
+			if(doc != null) {
+				doc.removeDocumentListener(this);
+				isFirstTimeRead = true;
 			}
+		} catch(Exception e) {
+			// ignore this
 		}
-		isRunning = false;
+		doc = null;
 	}
 
 	// Private -----------------------------------------------------------------
 
-	private synchronized IDocument openConsole() throws ThreadInterruptedException {
+	private IDocument openConsole() throws FileNotFoundException {
 		IDocument myDoc = null;
-		boolean firstExec = true;
-		while(isRunning) {
-			try {
-				con = findConsole();
-				if (con != null) {
-					myDoc = getConsoleDocument();
-				}
-				isFirstTimeRead = true;
-				return myDoc;
-			} catch(FileNotFoundException fnfe) {
-				try {
-					if (firstExec) {
-						listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.warning",new String[]{path}).toCharArray(),true);
-						firstExec = false;
-					}
-					wait(ILogViewerConstants.TAIL_FILEOPEN_ERROR_WAIT);
-				} catch(InterruptedException ie) {
-					throw new ThreadInterruptedException(ie);
-				}
-			}
+		con = findConsole();
+		if (con != null) {
+			myDoc = getConsoleDocument();
 		}
-		throw new ThreadInterruptedException("no console found"); //$NON-NLS-1$
+		isFirstTimeRead = true;
+		return myDoc;
 	}
 
 	private IConsole findConsole() throws FileNotFoundException {
@@ -25,16 +25,23 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
 import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
 import de.anbos.eclipse.logviewer.plugin.Logger;
 
-public class FileTail implements Runnable {
+public class FileTail implements ITailSource, IFileWatchListener {
 
     // Constant ----------------------------------------------------------------
 
@@ -47,11 +54,31 @@ public class FileTail implements Runnable {
     private IFileChangedListener listener;
 
     private CharsetDecoder decoder;
-    private boolean isRunning;
+    private volatile TailTask task;
     private boolean isFirstTimeRead;
+    private boolean isLineAligned;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean isOpenWarningShown;
+    private boolean isReplaced;
+    private Object fileIdentity;
+    private int readwait;
+
+    private boolean isWatched;
+    private AtomicBoolean isModified = new AtomicBoolean();
+    private boolean isWaiting;
+    private int missedEvents;
 
     private int bufferCapacity;
     private ByteBuffer mappedBuffer;
+    private ByteBuffer readBuffer;
+    private CharBuffer charBuffer;
+    private LineIndex lineIndex;
+
+    private PagedFileReader headReader;
+    private long headStart;
+    private long headEnd;
 
     // Constructor -------------------------------------------------------------
 
@@ -61,72 +88,153 @@ public class FileTail implements Runnable {
         listener = myListener;
         decoder = charset.newDecoder();
         decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        isLineAligned = AbstractPageSource.isLineAligned(charset);
         bufferCapacity = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_BUFFER);
     }
 
     // Public ------------------------------------------------------------------
 
     public void setMonitorStatus(boolean monitor) {
+        TailTask current = task;
+        boolean isRunning = current != null && current.isActive();
         if(isRunning == monitor) {
             return;
         }
-        isRunning = monitor;
-        if(isRunning) {
-            Thread tailThread = new Thread(this);
-            tailThread.setDaemon(true);
-            tailThread.start();
+        if(monitor) {
+            task = TailScheduler.getInstance().schedule(this);
+        } else {
+            task = null;
+            current.cancel();
+        }
+    }
+
+    /**
+     * @return the file for paging, null if the charset does not allow line
+     * aligned pages
+     */
+    public IPageSource getPageSource() {
+        return isLineAligned ? new PagedFileReader(filePath, decoder.charset()) : null;
+    }
+
+    /**
+     * @return the line index of the file, null before the tail was started
+     * for the first time or if the charset does not allow to search for line
+     * feeds
+     */
+    public LineIndex getLineIndex() {
+        return lineIndex;
+    }
+
+    /* (non-Javadoc)
+     * @see de.anbos.eclipse.logviewer.plugin.file.IFileWatchListener#fileModified()
+     */
+    public void fileModified() {
+        isModified.set(true);
+        TailTask current = task;
+        if(current != null) {
+            current.wakeUp();
         }
     }
 
-    public synchronized void run() {
-        isRunning = true;
-        RandomAccessFile file = null;
+    /* (non-Javadoc)
+     * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#start()
+     */
+    public void start() {
+        readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
+        missedEvents = 0;
+        isWaiting = false;
+        isOpenWarningShown = false;
+        isReplaced = false;
+        // the file may have changed while the tail was stopped. The index counts
+        // the byte 0x0A, which is a line feed in line aligned charsets only.
+        lineIndex = isLineAligned ? LineIndex.open(filePath) : null;
+        isWatched = LogViewerPlugin.getDefault().getPreferenceStore().getBoolean(ILogViewerConstants.PREF_WATCH_FILES)
+                && FileWatcher.getInstance().register(filePath, this);
+    }
+
+    /* (non-Javadoc)
+     * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#poll()
+     */
+    public long poll() {
         try {
-            int readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
-            file = openFile();
-            if(file == null) {
-            	// should not happen, see Issue 55: Improve FileTail's exception handling
-            	throw new FileNotFoundException();
+            if(channel == null && !openFile()) {
+                return ILogViewerConstants.TAIL_FILEOPEN_ERROR_WAIT;
             }
-            FileChannel channel = file.getChannel();
-            while(isRunning) {
-                if(channel.size() - channel.position() > 0) {
-                    listener.contentAboutToBeChanged();
-                    read(channel);
-                    continue;
-                }
-                wait(readwait);
+            boolean notified = isModified.getAndSet(false);
+            if(channel.size() < channel.position()) {
+                // truncated in place (e.g. copytruncate), the new content starts at 0
+                restart("tail.loading.file.truncated"); //$NON-NLS-1$
             }
-        } catch(FileNotFoundException fnf) {
-        	// no exeption if file not found, because it's predictable
-        	// see Issue 55: Improve FileTail's exception handling
-            //logger.logError(fnf);
-            listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.notfound",new String[]{filePath}).toCharArray(),true);
-        } catch(ThreadInterruptedException tie) {
-            logger.logError(tie);
-            listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.error",new String[]{filePath}).toCharArray(),true);
+            if(!listener.isReady()) {
+                // the file keeps the content until the view caught up
+                return ILogViewerConstants.TAIL_BUSY_WAIT;
+            }
+            if(headEnd > headStart) {
+                // complete the backlog in front of the first read
+                fillHead();
+                return 0;
+            }
+            if(channel.size() - channel.position() > 0) {
+                checkMissedEvent(notified);
+                listener.contentAboutToBeChanged();
+                read(channel);
+                // more data may be waiting, but let the other tails have their turn first
+                return 0;
+            }
+            if(lineIndex != null && lineIndex.scan(channel, channel.position())) {
+                // index the part in front of the initial load while idle
+                return 0;
+            }
+            if(isFileReplaced()) {
+                // the old file is drained, go on with the new one (e.g. logrotate create)
+                closeFile();
+                isReplaced = true;
+                return 0;
+            }
+            isWaiting = true;
+            return isWatched ? ILogViewerConstants.TAIL_WATCH_FALLBACK_WAIT : readwait;
         } catch(MalformedInputException mie) {
             logger.logError(mie);
             listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.encoding.error",new String[]{decoder.charset().displayName()}).toCharArray(),true);
         } catch(IOException ioe) {
             logger.logError(ioe);
-        } catch(InterruptedException ie) {
-            logger.logError(ie);
-        } finally {
-            try {
-                if(file != null) {
-                    file.close();
-
-                    if(isRunning==false && mappedBuffer!=null)
-					{
-						stopFileMapping(mappedBuffer);
-					}
-                }
-            } catch(Exception e) {
-                // ignore this
+        }
+        return STOP;
+    }
+
+    /* (non-Javadoc)
+     * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#stop()
+     */
+    public void stop() {
+        if(isWatched) {
+            FileWatcher.getInstance().unregister(filePath, this);
+            isWatched = false;
+        }
+        if(lineIndex != null) {
+            lineIndex.save();
+        }
+        if(file == null) {
+            // no exeption if file not found, because it's predictable
+            // see Issue 55: Improve FileTail's exception handling
+            listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.notfound",new String[]{filePath}).toCharArray(),true);
+            return;
+        }
+        try {
+            file.close();
+            if(mappedBuffer!=null)
+            {
+                stopFileMapping(mappedBuffer);
             }
+        } catch(Exception e) {
+            // ignore this
         }
-        isRunning = false;
+        file = null;
+        channel = null;
+        fileIdentity = null;
+        readBuffer = null;
+        charBuffer = null;
+        headReader = null;
+        headEnd = headStart;
     }
 
 	public void stopFileMapping(Buffer buffer)throws Exception {
@@ -140,27 +248,105 @@ public class FileTail implements Runnable {
 
     // Private -----------------------------------------------------------------
 
-    private synchronized RandomAccessFile openFile() throws ThreadInterruptedException, FileNotFoundException {
-        boolean firstExec = true;
-        while(isRunning) {
-            try {
-                RandomAccessFile file = new RandomAccessFile(filePath,"r"); //$NON-NLS-1$
+    /**
+     * If new data shows up after a fallback wait without an event several times
+     * in a row the file system does not deliver events (e.g. network shares) and
+     * we fall back to polling.
+     */
+    private void checkMissedEvent(boolean notified) {
+        boolean wasWaiting = isWaiting;
+        isWaiting = false;
+        if(!isWatched || !wasWaiting) {
+            return;
+        }
+        if(notified) {
+            missedEvents = 0;
+        } else if(++missedEvents >= ILogViewerConstants.TAIL_WATCH_MAX_MISSED_EVENTS) {
+            logger.logInfo("no change events for " + filePath + ", falling back to polling"); //$NON-NLS-1$ //$NON-NLS-2$
+            FileWatcher.getInstance().unregister(filePath, this);
+            isWatched = false;
+        }
+    }
+
+    /**
+     * tries to open the file once, the scheduler retries later on
+     * @return false if the file does not exist (yet)
+     */
+    private boolean openFile() throws IOException {
+        try {
+            file = new RandomAccessFile(filePath,"r"); //$NON-NLS-1$
+            channel = file.getChannel();
+            fileIdentity = readFileIdentity();
+            if(isReplaced) {
+                // keep the document and continue with the start of the new file
+                isReplaced = false;
+                restart("tail.loading.file.rotated"); //$NON-NLS-1$
+            } else {
                 isFirstTimeRead = true;
-                return file;
-            } catch(FileNotFoundException fnfe) {
-                try {
-                    if (firstExec) {
-                        listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.warning",new String[]{filePath}).toCharArray(),true);
-                        firstExec = false;
-                    }
-                    wait(ILogViewerConstants.TAIL_FILEOPEN_ERROR_WAIT);
-                } catch(InterruptedException ie) {
-                    throw new ThreadInterruptedException(ie);
-                }
             }
+            return true;
+        } catch(FileNotFoundException fnfe) {
+            if (!isOpenWarningShown && !isReplaced) {
+                listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.warning",new String[]{filePath}).toCharArray(),true);
+                isOpenWarningShown = true;
+            }
+            return false;
+        }
+    }
+
+    private void closeFile() {
+        try {
+            file.close();
+        } catch(IOException e) {
+            // ignore this
+        }
+        file = null;
+        channel = null;
+        fileIdentity = null;
+    }
+
+    /**
+     * starts reading at the beginning of the file again without resetting the
+     * document, the listener gets an info line instead
+     */
+    private void restart(String messageKey) throws IOException {
+        channel.position(0);
+        if(lineIndex != null) {
+            lineIndex.reset();
+        }
+        headEnd = headStart;
+        decoder.reset();
+        if(readBuffer != null) {
+            readBuffer.clear();
+        }
+        listener.contentAboutToBeChanged();
+        listener.fileChanged(LogViewerPlugin.getResourceString(messageKey,new String[]{filePath}).toCharArray(),false);
+    }
+
+    /**
+     * @return true if another file than the open one exists under the path now
+     */
+    private boolean isFileReplaced() {
+        if(fileIdentity == null) {
+            return false;
+        }
+        Object identity = readFileIdentity();
+        return identity != null && !identity.equals(fileIdentity);
+    }
+
+    /**
+     * @return the file key (inode) or, where there is none, the creation time of
+     * the file the path points to, null if it does not exist
+     */
+    private Object readFileIdentity() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class);
+            return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        } catch(IOException e) {
+            return null;
+        } catch(InvalidPathException e) {
+            return null;
         }
-        // right exeption, see Issue 55: Improve FileTail's exception handling
-        throw new FileNotFoundException();
     }
 
     /**
@@ -178,26 +364,194 @@ public class FileTail implements Runnable {
         long startPosition = channel.position();
         long endPosition = channel.size();
         long size =  endPosition - startPosition;
-        // if first time or big change then read only the rest
-        if (isFirstTimeRead || size > INITIAL_LOAD_SIZE) {
+        // the first time read only the rest, later on a big change is read with
+        // the next polls, at most a buffer at a time
+        if (isFirstTimeRead) {
         	isFirstTimeRead = false;
             synchronized (channel) {
-                if(size > INITIAL_LOAD_SIZE) {
+                // bytes carried over from the last read do not fit anymore
+                decoder.reset();
+                if(readBuffer != null) {
+                    readBuffer.clear();
+                }
+                headEnd = headStart;
+                if(isLineAligned) {
+                    // the last screenful now, the rest of the backlog with the next polls
+                    long[] lineStarts = findLineStarts(channel, startPosition, endPosition);
+                    startPosition = lineStarts[0];
+                    headStart = lineStarts[1];
+                    headEnd = startPosition;
+                    if(headReader == null) {
+                        headReader = new PagedFileReader(filePath, decoder.charset());
+                    }
+                } else if(size > INITIAL_LOAD_SIZE) {
                     startPosition = endPosition - INITIAL_LOAD_SIZE;
-                    size = INITIAL_LOAD_SIZE;
                 }
+                size = endPosition - startPosition;
                 mappedBuffer = channel.map(MapMode.READ_ONLY, startPosition, size);
-                CharBuffer mappedChars = decoder.decode(mappedBuffer);
-                channel.position(endPosition);
-                listener.fileChanged(mappedChars.array(), true);
+                char[] mappedChars = decode(mappedBuffer, CharBuffer.allocate(maxChars(mappedBuffer.remaining())));
+                // an incomplete character at the end is read again with the next chunk
+                channel.position(endPosition - mappedBuffer.remaining());
+                listener.filePositionChanged(startPosition, channel.position());
+                listener.fileChanged(mappedChars, true);
             }
             return;
         }
-        mappedBuffer = ByteBuffer.allocate(bufferCapacity);
-        channel.read(mappedBuffer);
-        mappedBuffer.flip();
-        CharBuffer chars = decoder.decode(mappedBuffer);
-        listener.fileChanged(chars.array(),false);
+        ByteBuffer in = getReadBuffer(size);
+        long chunkStart = startPosition - in.position();
+        channel.read(in);
+        in.flip();
+        if(lineIndex != null) {
+            lineIndex.extend(in, chunkStart);
+        }
+        char[] chars = decode(in, getCharBuffer(in.remaining()));
+        // keep a partial multi-byte sequence for the next read
+        in.compact();
+        listener.filePositionChanged(chunkStart, channel.position() - in.position());
+        listener.fileChanged(chars,false);
+    }
+
+    /**
+     * @return the pooled read buffer with the bytes carried over from the last
+     * read at its start and the limit set to what is available, at most the
+     * configured buffer size
+     */
+    private ByteBuffer getReadBuffer(long available) {
+        int carried = readBuffer == null ? 0 : readBuffer.position();
+        int maxSize = Math.max(ILogViewerConstants.TAIL_MIN_READ_SIZE, bufferCapacity);
+        int wanted = (int)Math.min(maxSize, carried + available);
+        if(readBuffer == null || readBuffer.capacity() < wanted) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.min(maxSize, nextPowerOfTwo(wanted)));
+            if(readBuffer != null) {
+                readBuffer.flip();
+                grown.put(readBuffer);
+            }
+            readBuffer = grown;
+        }
+        readBuffer.limit(Math.max(carried + 1, Math.min(readBuffer.capacity(), wanted)));
+        return readBuffer;
+    }
+
+    private CharBuffer getCharBuffer(int bytes) {
+        int wanted = maxChars(bytes);
+        if(charBuffer == null || charBuffer.capacity() < wanted) {
+            charBuffer = CharBuffer.allocate(nextPowerOfTwo(wanted));
+        }
+        charBuffer.clear();
+        return charBuffer;
+    }
+
+    /**
+     * decodes all complete characters of the input, the listener keeps the
+     * content so it gets an exact sized copy
+     */
+    private char[] decode(ByteBuffer in, CharBuffer out) throws CharacterCodingException {
+        CoderResult result = decoder.decode(in, out, false);
+        if(result.isError()) {
+            result.throwException();
+        }
+        out.flip();
+        char[] chars = new char[out.remaining()];
+        out.get(chars);
+        out.clear();
+        return chars;
+    }
+
+    private int maxChars(int bytes) {
+        return (int)Math.ceil(bytes * (double)decoder.maxCharsPerByte());
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * scans backwards from the end for the start of the last screenful and for
+     * the start of the backlog, a line feed right at the end does not start a
+     * line. The first screen starts within INITIAL_LOAD_SIZE from the end.
+     * @param limit the lowest possible start
+     * @return the start of the first screen and the start of the backlog
+     */
+    private long[] findLineStarts(FileChannel channel, long limit, long end) throws IOException {
+        int backlog = Math.max(1, LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_BACKLOG));
+        int screen = Math.min(backlog, ILogViewerConstants.TAIL_FIRST_SCREEN_LINES);
+        long lowest = Math.max(limit, end - ILogViewerConstants.TAIL_MAX_BACKWARD_SCAN);
+        long screenStart = -1;
+        long lineStart = -1;
+        long firstStart = -1;
+        int found = 0;
+        ByteBuffer block = ByteBuffer.allocate(ILogViewerConstants.PAGE_SIZE);
+        long position = end;
+        while(position > lowest) {
+            long blockStart = Math.max(lowest, position - block.capacity());
+            block.clear();
+            block.limit((int)(position - blockStart));
+            while(block.hasRemaining() && channel.read(block, blockStart + block.position()) > 0) {
+                // positional reads leave the tail position untouched
+            }
+            for(int i = block.position() - 1; i >= 0; i--) {
+                if(block.get(i) != '\n' || blockStart + i + 1 == end) {
+                    continue;
+                }
+                lineStart = blockStart + i + 1;
+                if(lineStart >= end - INITIAL_LOAD_SIZE) {
+                    firstStart = lineStart;
+                }
+                if(++found == screen) {
+                    screenStart = lineStart;
+                }
+                if(found == backlog) {
+                    return limitFirstScreen(screenStart, lineStart, firstStart, end);
+                }
+            }
+            position = blockStart;
+        }
+        // fewer lines than the backlog, or lines too long to search any further
+        long backlogStart = lowest == limit || lineStart < 0 ? lowest : lineStart;
+        if(lowest == limit && limit >= end - INITIAL_LOAD_SIZE) {
+            firstStart = limit;
+        }
+        return limitFirstScreen(screenStart >= 0 ? screenStart : backlogStart, backlogStart, firstStart, end);
+    }
+
+    /**
+     * moves the first screen behind the lines which are too long to be read at
+     * once, they are loaded with the head
+     * @param firstStart the first line start within INITIAL_LOAD_SIZE from the
+     * end, -1 if there is none
+     */
+    private static long[] limitFirstScreen(long screenStart, long backlogStart, long firstStart, long end) {
+        if(screenStart >= end - INITIAL_LOAD_SIZE) {
+            return new long[]{screenStart, backlogStart};
+        }
+        if(firstStart >= 0) {
+            return new long[]{firstStart, backlogStart};
+        }
+        // the last line alone is longer, it is cut like in files which can not
+        // be searched for line starts
+        long start = end - INITIAL_LOAD_SIZE;
+        return new long[]{start, start};
+    }
+
+    /**
+     * hands the next lines in front of the first read to the listener, the
+     * blocks grow for lines longer than a page
+     */
+    private void fillHead() throws IOException {
+        IPageSource.Page page;
+        long start;
+        long blockSize = ILogViewerConstants.PAGE_SIZE;
+        do {
+            start = Math.max(headStart, headEnd - blockSize);
+            page = headReader.readLines(start, headEnd, start > headStart);
+            blockSize *= 2;
+        } while(page == null && start > headStart);
+        if(page == null) {
+            headEnd = headStart;
+            return;
+        }
+        listener.fileHeadLoaded(page.getText().toCharArray(), page.getStart(), page.getEnd());
+        headEnd = page.getStart();
     }
 
 	public Buffer getBuffer() {
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.Logger;
+
+/**
+ * Delivers change notifications for tailed files. All tails share a single
+ * WatchService and a single daemon thread, every directory is registered only
+ * once no matter how many of its files are open.
+ */
+public class FileWatcher {
+
+	// Constant ----------------------------------------------------------------
+
+	private static FileWatcher instance;
+
+	// Attribute ---------------------------------------------------------------
+
+	private Logger logger;
+	private WatchService watchService;
+	private Map<Path, WatchKey> directoryKeys;
+	private Map<WatchKey, Path> keyDirectories;
+	private Map<Path, List<IFileWatchListener>> listeners;
+
+	// Constructor -------------------------------------------------------------
+
+	private FileWatcher() {
+		logger = LogViewerPlugin.getDefault().getLogger();
+		directoryKeys = new HashMap<Path, WatchKey>();
+		keyDirectories = new HashMap<WatchKey, Path>();
+		listeners = new HashMap<Path, List<IFileWatchListener>>();
+	}
+
+	// Static ------------------------------------------------------------------
+
+	public static synchronized FileWatcher getInstance() {
+		if(instance == null) {
+			instance = new FileWatcher();
+		}
+		return instance;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * registers the listener for changes of the given file. The parent directory
+	 * has to exist, the file itself not.
+	 * @return false if the file system can't deliver events for that file, the
+	 * caller has to poll in that case
+	 */
+	public synchronized boolean register(String filePath, IFileWatchListener listener) {
+		Path file;
+		try {
+			file = toPath(filePath);
+		} catch(InvalidPathException ipe) {
+			return false;
+		}
+		Path directory = file.getParent();
+		if(directory == null) {
+			return false;
+		}
+		try {
+			if(watchService == null) {
+				watchService = FileSystems.getDefault().newWatchService();
+				Thread watchThread = new Thread(new WatchLoop(watchService), "LogViewer FileWatcher"); //$NON-NLS-1$
+				watchThread.setDaemon(true);
+				watchThread.start();
+			}
+			if(!directoryKeys.containsKey(directory)) {
+				WatchKey key = directory.register(watchService,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY,
+						StandardWatchEventKinds.ENTRY_DELETE);
+				directoryKeys.put(directory, key);
+				keyDirectories.put(key, directory);
+			}
+		} catch(IOException ioe) {
+			logger.logInfo("unable to watch " + directory + ", falling back to polling", ioe); //$NON-NLS-1$ //$NON-NLS-2$
+			closeIfUnused();
+			return false;
+		} catch(UnsupportedOperationException uoe) {
+			closeIfUnused();
+			return false;
+		}
+		List<IFileWatchListener> fileListeners = listeners.get(file);
+		if(fileListeners == null) {
+			fileListeners = new ArrayList<IFileWatchListener>();
+			listeners.put(file, fileListeners);
+		}
+		fileListeners.add(listener);
+		return true;
+	}
+
+	public synchronized void unregister(String filePath, IFileWatchListener listener) {
+		Path file;
+		try {
+			file = toPath(filePath);
+		} catch(InvalidPathException ipe) {
+			return;
+		}
+		List<IFileWatchListener> fileListeners = listeners.get(file);
+		if(fileListeners == null || !fileListeners.remove(listener)) {
+			return;
+		}
+		if(fileListeners.isEmpty()) {
+			listeners.remove(file);
+		}
+		Path directory = file.getParent();
+		if(!isDirectoryInUse(directory)) {
+			WatchKey key = directoryKeys.remove(directory);
+			if(key != null) {
+				keyDirectories.remove(key);
+				key.cancel();
+			}
+		}
+		closeIfUnused();
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private Path toPath(String filePath) {
+		return Paths.get(filePath).toAbsolutePath().normalize();
+	}
+
+	private boolean isDirectoryInUse(Path directory) {
+		Iterator<Path> it = listeners.keySet().iterator();
+		while(it.hasNext()) {
+			if(directory.equals(it.next().getParent())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void collectDirectoryListeners(Path directory, List<IFileWatchListener> toNotify) {
+		Iterator<Map.Entry<Path, List<IFileWatchListener>>> it = listeners.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Path, List<IFileWatchListener>> entry = it.next();
+			if(directory.equals(entry.getKey().getParent())) {
+				toNotify.addAll(entry.getValue());
+			}
+		}
+	}
+
+	private void closeIfUnused() {
+		if(watchService == null || !directoryKeys.isEmpty()) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch(IOException e) {
+			// ignore this
+		}
+		watchService = null;
+	}
+
+	// Inner classes ----------------------------------------------------------------
+
+	private class WatchLoop implements Runnable {
+
+		private WatchService service;
+
+		public WatchLoop(WatchService service) {
+			this.service = service;
+		}
+
+		public void run() {
+			while(true) {
+				WatchKey key;
+				try {
+					key = service.take();
+				} catch(InterruptedException ie) {
+					return;
+				} catch(ClosedWatchServiceException cwse) {
+					return;
+				}
+				List<IFileWatchListener> toNotify = new ArrayList<IFileWatchListener>();
+				synchronized(FileWatcher.this) {
+					Path directory = keyDirectories.get(key);
+					if(directory != null) {
+						for(WatchEvent<?> event : key.pollEvents()) {
+							if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+								collectDirectoryListeners(directory, toNotify);
+							} else {
+								List<IFileWatchListener> fileListeners = listeners.get(directory.resolve((Path)event.context()));
+								if(fileListeners != null) {
+									toNotify.addAll(fileListeners);
+								}
+							}
+						}
+						if(!key.reset()) {
+							// directory is gone, let the tails find out by themselves
+							directoryKeys.remove(directory);
+							keyDirectories.remove(key);
+							collectDirectoryListeners(directory, toNotify);
+						}
+					} else {
+						key.pollEvents();
+					}
+				}
+				for(IFileWatchListener listener : toNotify) {
+					listener.fileModified();
+				}
+			}
+		}
+	}
+}
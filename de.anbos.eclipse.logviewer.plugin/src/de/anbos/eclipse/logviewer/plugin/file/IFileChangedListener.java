@@ -20,4 +20,25 @@ public interface IFileChangedListener {
 	public void contentAboutToBeChanged();
 	
 	public void fileChanged(char[] content, boolean isFirstTimeRead);
+
+	/**
+	 * @return false while the listener is behind with the content delivered
+	 * so far. Tails which can read the content later on should wait then.
+	 */
+	public boolean isReady();
+
+	/**
+	 * called by file based tails right before fileChanged() with the byte range
+	 * of the file which the following content was read from
+	 */
+	public void filePositionChanged(long start, long end);
+
+	/**
+	 * called by file based tails after the first read with the lines in front
+	 * of it, until the backlog is complete. The content belongs directly in
+	 * front of the part of the file which was delivered before.
+	 * @param start file position of the content
+	 * @param end file position of the first byte delivered before
+	 */
+	public void fileHeadLoaded(char[] content, long start, long end);
 }
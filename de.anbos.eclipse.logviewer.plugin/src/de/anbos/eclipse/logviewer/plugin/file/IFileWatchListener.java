@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+public interface IFileWatchListener {
+
+	/**
+	 * called by the FileWatcher thread whenever the watched file was created,
+	 * modified or deleted (or the event queue overflowed)
+	 */
+	public void fileModified();
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Page source which keeps the complete text a document has shown, for tails
+ * that can not be read again. The positions of its pages are the byte offsets
+ * of the text encoded in getCharset().
+ */
+public interface IHistoryStore extends IPageSource {
+
+	public void append(String text) throws IOException;
+
+	/**
+	 * @return the number of bytes appended so far
+	 */
+	public long getLength();
+
+	public Charset getCharset();
+
+	/**
+	 * @return the bytes the store keeps on the heap
+	 */
+	public long getRetainedSize();
+
+	/**
+	 * drops the content, the store can be appended again
+	 */
+	public void clear();
+
+	/**
+	 * drops the content and releases all resources
+	 */
+	public void close();
+}
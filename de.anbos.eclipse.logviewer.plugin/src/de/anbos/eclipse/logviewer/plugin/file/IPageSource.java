@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.IOException;
+
+/**
+ * Random access to line aligned pages of the content a tail delivers. The
+ * offsets are the byte positions reported by IFileChangedListener.filePositionChanged().
+ */
+public interface IPageSource {
+
+	/**
+	 * reads the page which ends at the given offset. The page starts at the first
+	 * line start within pageSize bytes before the end, a single line longer than
+	 * that is cut.
+	 * @return the page or null if there is nothing before the offset
+	 */
+	public Page readBefore(long end, int pageSize) throws IOException;
+
+	/**
+	 * reads the page which starts at the given offset. The page ends after the
+	 * last line end within pageSize bytes, or exactly at the limit if that is
+	 * reached.
+	 * @return the page or null if there is nothing between offset and limit
+	 */
+	public Page readAfter(long start, int pageSize, long limit) throws IOException;
+
+	// Inner classes ----------------------------------------------------------------
+
+	/**
+	 * decoded text of the bytes [start, end) of the source
+	 */
+	public static class Page {
+
+		private long start;
+		private long end;
+		private String text;
+
+		public Page(long start, long end, String text) {
+			this.start = start;
+			this.end = end;
+			this.text = text;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public long getEnd() {
+			return end;
+		}
+
+		public String getText() {
+			return text;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+/**
+ * A source that is driven by the TailScheduler. The methods of one source are
+ * never called concurrently, but not necessarily from the same thread.
+ */
+public interface ITailSource {
+
+	/* poll() result: the source is done, stop() will be called */
+	public static final long STOP = -1;
+	/* poll() result: do not poll again until TailTask.wakeUp() is called */
+	public static final long IDLE = Long.MAX_VALUE;
+
+	/**
+	 * called once before the first poll()
+	 */
+	public void start();
+
+	/**
+	 * does a bounded amount of work and must never block for long, all sources
+	 * share a few threads.
+	 * @return the delay in milliseconds until the next poll, STOP or IDLE
+	 */
+	public long poll();
+
+	/**
+	 * called once after the task was cancelled or poll() returned STOP,
+	 * releases all resources
+	 */
+	public void stop();
+}
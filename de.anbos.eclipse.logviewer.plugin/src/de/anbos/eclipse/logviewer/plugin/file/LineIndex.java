@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+
+/**
+ * Sparse table of the byte offset of every LINE_INDEX_STEP-th line of a file.
+ * The table is built once by scanning the file and then extended with the
+ * data the tail reads. It is kept as a sidecar in the plugin's state location,
+ * keyed by the path and validated by size, modification time and a checksum of
+ * the last indexed bytes, so reopening a file does not scan it again.
+ */
+public class LineIndex {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final int MAGIC = 0x4C564958;
+	private static final int VERSION = 1;
+	private static final int CHECKSUM_SIZE = 4096;
+
+	private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+	private static final long LINE_FEEDS = 0x0A0A0A0A0A0A0A0AL;
+
+	// Attribute ---------------------------------------------------------------
+
+	private String filePath;
+	private int step;
+	private long[] checkpoints;
+	private int checkpointCount;
+	private long lineCount;
+	private long indexedEnd;
+	private ByteBuffer scanBuffer;
+
+	// Constructor -------------------------------------------------------------
+
+	private LineIndex(String filePath) {
+		this.filePath = filePath;
+		step = ILogViewerConstants.LINE_INDEX_STEP;
+		checkpoints = new long[64];
+		checkpointCount = 1;
+	}
+
+	// Static ------------------------------------------------------------------
+
+	/**
+	 * @return the persisted index of the file if it is still valid, an empty
+	 * index otherwise
+	 */
+	public static LineIndex open(String filePath) {
+		LineIndex index = new LineIndex(filePath);
+		File sidecar = getSidecar(filePath);
+		if(sidecar != null && sidecar.isFile()) {
+			try {
+				if(!index.load(sidecar)) {
+					index = new LineIndex(filePath);
+					sidecar.delete();
+				}
+			} catch(IOException e) {
+				LogViewerPlugin.getDefault().getLogger().logWarning("unable to read the line index of " + filePath + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+				index = new LineIndex(filePath);
+			}
+		}
+		return index;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @return the number of line feeds in the indexed part of the file
+	 */
+	public synchronized long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the end of the indexed part of the file
+	 */
+	public synchronized long getIndexedEnd() {
+		return indexedEnd;
+	}
+
+	/**
+	 * @param line zero based line number
+	 * @return the byte offset where the line starts, -1 if the line is not
+	 * indexed (yet)
+	 */
+	public synchronized long getLineOffset(long line) throws IOException {
+		if(line < 0 || line > lineCount) {
+			return -1;
+		}
+		int checkpoint = (int)(line / step);
+		long offset = checkpoints[checkpoint];
+		long remaining = line - (long)checkpoint * step;
+		if(remaining == 0) {
+			return offset;
+		}
+		RandomAccessFile file = new RandomAccessFile(filePath, "r"); //$NON-NLS-1$
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(ILogViewerConstants.PAGE_SIZE);
+			while(offset < indexedEnd) {
+				buffer.clear();
+				buffer.limit((int)Math.min(buffer.capacity(), indexedEnd - offset));
+				int count = file.getChannel().read(buffer, offset);
+				if(count <= 0) {
+					break;
+				}
+				for(int i = 0; i < count; i++) {
+					if(buffer.get(i) == '\n' && --remaining == 0) {
+						return offset + i + 1;
+					}
+				}
+				offset += count;
+			}
+		} finally {
+			file.close();
+		}
+		return -1;
+	}
+
+	/**
+	 * counts the line feeds of bytes the tail has read. Bytes in front of the
+	 * indexed end are skipped, a chunk behind it is ignored and picked up by
+	 * scan() later on.
+	 * @param bytes the content between position and limit, neither is changed
+	 * @param start the file position of the first byte
+	 */
+	public synchronized void extend(ByteBuffer bytes, long start) {
+		long end = start + bytes.remaining();
+		if(start > indexedEnd || end <= indexedEnd) {
+			return;
+		}
+		count(bytes, bytes.position() + (int)(indexedEnd - start), bytes.limit());
+	}
+
+	/**
+	 * indexes at most LINE_INDEX_SCAN_SIZE bytes behind the indexed end. Uses
+	 * positional reads, the position of the channel is not changed.
+	 * @return true if the index does not reach the limit yet
+	 */
+	public synchronized boolean scan(FileChannel channel, long limit) throws IOException {
+		if(scanBuffer == null) {
+			scanBuffer = ByteBuffer.allocateDirect(ILogViewerConstants.LINE_INDEX_BUFFER_SIZE);
+		}
+		long scanEnd = Math.min(limit, indexedEnd + ILogViewerConstants.LINE_INDEX_SCAN_SIZE);
+		while(indexedEnd < scanEnd) {
+			scanBuffer.clear();
+			scanBuffer.limit((int)Math.min(scanBuffer.capacity(), scanEnd - indexedEnd));
+			int count = channel.read(scanBuffer, indexedEnd);
+			if(count <= 0) {
+				break;
+			}
+			count(scanBuffer, 0, count);
+		}
+		return indexedEnd < limit;
+	}
+
+	/**
+	 * drops the index, e.g. after the file was truncated or replaced
+	 */
+	public synchronized void reset() {
+		checkpointCount = 1;
+		lineCount = 0;
+		indexedEnd = 0;
+	}
+
+	/**
+	 * writes the index to its sidecar, small files are scanned again instead
+	 */
+	public synchronized void save() {
+		scanBuffer = null;
+		File sidecar = getSidecar(filePath);
+		if(sidecar == null) {
+			return;
+		}
+		if(indexedEnd < ILogViewerConstants.LINE_INDEX_MIN_FILE_SIZE) {
+			sidecar.delete();
+			return;
+		}
+		try {
+			long checksum = checksum();
+			sidecar.getParentFile().mkdirs();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sidecar)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(filePath);
+				out.writeLong(indexedEnd);
+				out.writeLong(new File(filePath).lastModified());
+				out.writeLong(checksum);
+				out.writeInt(step);
+				out.writeLong(lineCount);
+				out.writeInt(checkpointCount);
+				for(int i = 0; i < checkpointCount; i++) {
+					out.writeLong(checkpoints[i]);
+				}
+			} finally {
+				out.close();
+			}
+		} catch(IOException e) {
+			LogViewerPlugin.getDefault().getLogger().logWarning("unable to save the line index of " + filePath + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	// Private -----------------------------------------------------------------
+
+	/**
+	 * @return the sidecar file of the path in the state location, null if
+	 * there is none
+	 */
+	private static File getSidecar(String filePath) {
+		LogViewerPlugin plugin = LogViewerPlugin.getDefault();
+		if(plugin == null) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(filePath.getBytes(StandardCharsets.UTF_8));
+		String name = Integer.toHexString(filePath.hashCode()) + Long.toHexString(crc.getValue()) + ".idx"; //$NON-NLS-1$
+		return plugin.getStateLocation().append(ILogViewerConstants.LINE_INDEX_DIR).append(name).toFile();
+	}
+
+	/**
+	 * @return false if the sidecar belongs to another file or the file was
+	 * changed other than by appending
+	 */
+	private boolean load(File sidecar) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION || !filePath.equals(in.readUTF())) {
+				return false;
+			}
+			long size = in.readLong();
+			long modified = in.readLong();
+			long checksum = in.readLong();
+			if(in.readInt() != step) {
+				return false;
+			}
+			File file = new File(filePath);
+			long length = file.length();
+			if(length < size) {
+				return false;
+			}
+			long count = in.readLong();
+			int checkpointsIn = in.readInt();
+			if(checkpointsIn < 1 || checkpointsIn - 1 != count / step) {
+				return false;
+			}
+			long[] offsets = new long[Math.max(64, checkpointsIn * 2)];
+			for(int i = 0; i < checkpointsIn; i++) {
+				offsets[i] = in.readLong();
+			}
+			checkpoints = offsets;
+			checkpointCount = checkpointsIn;
+			lineCount = count;
+			indexedEnd = size;
+			// appended since the last save, check that the indexed part is unchanged
+			return (length == size && file.lastModified() == modified) || checksum() == checksum;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return crc of the last indexed bytes
+	 */
+	private long checksum() throws IOException {
+		int length = (int)Math.min(CHECKSUM_SIZE, indexedEnd);
+		byte[] bytes = new byte[length];
+		RandomAccessFile file = new RandomAccessFile(filePath, "r"); //$NON-NLS-1$
+		try {
+			file.seek(indexedEnd - length);
+			file.readFully(bytes);
+		} finally {
+			file.close();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+
+	/**
+	 * counts the line feeds between from and to and appends the checkpoints.
+	 * Eight bytes are tested at once, only words containing the line that
+	 * completes a step are looked at byte by byte.
+	 */
+	private void count(ByteBuffer bytes, int from, int to) {
+		int i = from;
+		int wordEnd = to - 7;
+		long nextCheckpoint = (long)checkpointCount * step;
+		while(i < to) {
+			if(i < wordEnd) {
+				long x = bytes.getLong(i) ^ LINE_FEEDS;
+				// exact count of zero bytes: the high bit is only set for a zero byte
+				long zeros = ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+				int found = Long.bitCount(zeros);
+				if(lineCount + found < nextCheckpoint) {
+					lineCount += found;
+					i += 8;
+					continue;
+				}
+			}
+			if(bytes.get(i) == '\n' && ++lineCount == nextCheckpoint) {
+				addCheckpoint(indexedEnd + (i - from) + 1);
+				nextCheckpoint += step;
+			}
+			i++;
+		}
+		indexedEnd += to - from;
+	}
+
+	private void addCheckpoint(long offset) {
+		if(checkpointCount == checkpoints.length) {
+			checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+		}
+		checkpoints[checkpointCount++] = offset;
+	}
+}
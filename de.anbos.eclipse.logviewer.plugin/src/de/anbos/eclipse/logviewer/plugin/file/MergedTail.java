@@ -0,0 +1,487 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.Logger;
+
+/**
+ * Tails several files as one. The paths are separated by MERGED_PATH_DELIMITER,
+ * the file name of each path may be a glob which is expanded again from time
+ * to time, so new files (e.g. of another node) show up by themselves.
+ *
+ * The lines of all files are merged by their timestamps: a line is only handed
+ * to the listener once every file has a later one queued, or after it waited
+ * for TAIL_MERGE_REORDER_WINDOW milliseconds. Lines without a timestamp stay
+ * together with the line in front of them.
+ *
+ * A file which is renamed and created again is read from the start once the
+ * old one is drained. A file which was tailed before under another path,
+ * e.g. the first rotation matched by the glob, is not added again.
+ */
+public class MergedTail implements ITailSource, IFileWatchListener {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final int READ_SIZE = 65536;
+
+	// Attribute ---------------------------------------------------------------
+
+	private Logger logger;
+	private String pathSpec;
+	private Charset charset;
+	private IFileChangedListener listener;
+	private volatile TailTask task;
+
+	private List<Source> sources;
+	private Map<String, Source> sourcesByPath;
+	// the identities of all files read so far
+	private Set<Object> tailedIdentities;
+	private boolean isFirstTimeRead;
+	private boolean isWatching;
+	private long lastExpand;
+	private int readwait;
+
+	// Constructor -------------------------------------------------------------
+
+	public MergedTail(String pathSpec, Charset charset, IFileChangedListener listener) {
+		logger = LogViewerPlugin.getDefault().getLogger();
+		this.pathSpec = pathSpec;
+		this.charset = charset;
+		this.listener = listener;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	public void setMonitorStatus(boolean monitor) {
+		TailTask current = task;
+		boolean isRunning = current != null && current.isActive();
+		if(isRunning == monitor) {
+			return;
+		}
+		if(monitor) {
+			task = TailScheduler.getInstance().schedule(this);
+		} else {
+			task = null;
+			current.cancel();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IFileWatchListener#fileModified()
+	 */
+	public void fileModified() {
+		TailTask current = task;
+		if(current != null) {
+			current.wakeUp();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#start()
+	 */
+	public void start() {
+		readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
+		isWatching = LogViewerPlugin.getDefault().getPreferenceStore().getBoolean(ILogViewerConstants.PREF_WATCH_FILES);
+		sources = new ArrayList<Source>();
+		sourcesByPath = new HashMap<String, Source>();
+		tailedIdentities = new HashSet<Object>();
+		isFirstTimeRead = true;
+		listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file",new String[]{pathSpec}).toCharArray(),true);
+		expand(true);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#poll()
+	 */
+	public long poll() {
+		if(!isFirstTimeRead && !listener.isReady()) {
+			// the files keep the lines until the view caught up
+			return ILogViewerConstants.TAIL_BUSY_WAIT;
+		}
+		long now = System.currentTimeMillis();
+		if(now - lastExpand >= ILogViewerConstants.TAIL_WATCH_FALLBACK_WAIT) {
+			expand(false);
+		}
+		boolean hasRead = false;
+		// the initial loads are read completely before they are merged
+		int reads = isFirstTimeRead ? ILogViewerConstants.TAIL_MERGE_INITIAL_LOAD_SIZE / READ_SIZE + 1 : 1;
+		for(Source source : sources) {
+			try {
+				for(int i = 0; i < reads && source.read(now); i++) {
+					hasRead = true;
+				}
+			} catch(IOException ioe) {
+				logger.logError("unable to read " + source.path, ioe); //$NON-NLS-1$
+				source.close();
+			}
+		}
+		// nothing to wait for in the initial loads
+		String merged = merge(now, isFirstTimeRead);
+		// the first read is delivered even if all files are empty or missing,
+		// like FileTail does
+		if(merged.length() > 0 || isFirstTimeRead) {
+			listener.contentAboutToBeChanged();
+			listener.fileChanged(merged.toCharArray(), isFirstTimeRead);
+		}
+		isFirstTimeRead = false;
+		if(hasRead) {
+			return 0;
+		}
+		long wait = readwait;
+		long oldest = getOldestArrival();
+		if(oldest >= 0) {
+			wait = Math.min(wait, Math.max(1, oldest + ILogViewerConstants.TAIL_MERGE_REORDER_WINDOW - now));
+		}
+		return wait;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#stop()
+	 */
+	public void stop() {
+		if(sources == null) {
+			return;
+		}
+		for(Source source : sources) {
+			if(source.isWatched) {
+				FileWatcher.getInstance().unregister(source.path, this);
+			}
+			source.close();
+		}
+		sources = null;
+		sourcesByPath = null;
+		tailedIdentities = null;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	/**
+	 * adds the files of the path specification which are not tailed yet
+	 * @param initial true for the files present at the start, they are read
+	 * from their last part only
+	 */
+	private void expand(boolean initial) {
+		lastExpand = System.currentTimeMillis();
+		for(String entry : pathSpec.split(ILogViewerConstants.MERGED_PATH_DELIMITER)) {
+			entry = entry.trim();
+			if(entry.isEmpty()) {
+				continue;
+			}
+			int separator = Math.max(entry.lastIndexOf('/'), entry.lastIndexOf(File.separatorChar));
+			String name = entry.substring(separator + 1);
+			if(!isGlob(name)) {
+				addSource(entry, initial);
+				continue;
+			}
+			try {
+				Path directory = Paths.get(separator > 0 ? entry.substring(0, separator) : "."); //$NON-NLS-1$
+				DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name);
+				try {
+					for(Path file : stream) {
+						if(Files.isRegularFile(file)) {
+							addSource(file.toString(), initial);
+						}
+					}
+				} finally {
+					stream.close();
+				}
+			} catch(IOException e) {
+				// directory not available (yet)
+			} catch(InvalidPathException e) {
+				logger.logWarning("invalid path " + entry); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private void addSource(String path, boolean initial) {
+		if(sourcesByPath.containsKey(path)) {
+			return;
+		}
+		Object identity = readIdentity(path);
+		if(identity != null && tailedIdentities.contains(identity)) {
+			// a rotated file, its lines were read under the path it had before
+			return;
+		}
+		Source source = new Source(path, initial);
+		source.isWatched = isWatching && FileWatcher.getInstance().register(path, this);
+		sources.add(source);
+		sourcesByPath.put(path, source);
+	}
+
+	/**
+	 * @return the file key (inode) or, where there is none, the creation
+	 * time of the file, null if it is not available
+	 */
+	private static Object readIdentity(String path) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+			return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+		} catch(IOException e) {
+			return null;
+		} catch(InvalidPathException e) {
+			return null;
+		}
+	}
+
+	private static boolean isGlob(String name) {
+		return name.indexOf('*') >= 0 || name.indexOf('?') >= 0 || name.indexOf('[') >= 0 || name.indexOf('{') >= 0;
+	}
+
+	/**
+	 * k-way merge over the queued lines of all files
+	 * @param flush true to hand out all queued lines
+	 * @return the lines which are due, in timestamp order
+	 */
+	private String merge(long now, boolean flush) {
+		StringBuilder merged = new StringBuilder();
+		while(true) {
+			Source next = null;
+			boolean complete = true;
+			for(Source source : sources) {
+				Record head = source.records.peek();
+				if(head == null) {
+					// a file which is not there does not hold back the others
+					complete &= source.channel == null;
+					continue;
+				}
+				if(next == null || head.time < next.records.peek().time) {
+					next = source;
+				}
+			}
+			if(next == null) {
+				break;
+			}
+			Record record = next.records.peek();
+			if(!flush && !complete && now - record.arrival < ILogViewerConstants.TAIL_MERGE_REORDER_WINDOW) {
+				// another file may still deliver an earlier line
+				break;
+			}
+			next.records.poll();
+			merged.append(record.text);
+		}
+		return merged.toString();
+	}
+
+	/**
+	 * @return the arrival time of the longest waiting line, -1 if there is none
+	 */
+	private long getOldestArrival() {
+		long oldest = -1;
+		for(Source source : sources) {
+			Record head = source.records.peek();
+			if(head != null && (oldest < 0 || head.arrival < oldest)) {
+				oldest = head.arrival;
+			}
+		}
+		return oldest;
+	}
+
+	// Inner classes ----------------------------------------------------------------
+
+	private static class Record {
+
+		private long time;
+		private long arrival;
+		private StringBuilder text;
+
+		private Record(long time, long arrival, String text) {
+			this.time = time;
+			this.arrival = arrival;
+			this.text = new StringBuilder(text);
+		}
+	}
+
+	private class Source {
+
+		private String path;
+		private String prefix;
+		private RandomAccessFile file;
+		private FileChannel channel;
+		private CharsetDecoder decoder;
+		private ByteBuffer bytes;
+		private CharBuffer chars;
+		private StringBuilder partial;
+		private boolean skipFirstLine;
+		private boolean isInitial;
+		private boolean isWatched;
+		// where reading goes on after the file was closed, e.g. after an error
+		private long position;
+		private Object identity;
+
+		private TimestampParser parser;
+		private ArrayDeque<Record> records;
+		private long lastTime;
+
+		private Source(String path, boolean isInitial) {
+			this.path = path;
+			this.isInitial = isInitial;
+			prefix = "[" + new File(path).getName() + "] "; //$NON-NLS-1$ //$NON-NLS-2$
+			decoder = charset.newDecoder();
+			decoder.onMalformedInput(CodingErrorAction.REPLACE);
+			decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			bytes = ByteBuffer.allocate(READ_SIZE);
+			chars = CharBuffer.allocate((int)Math.ceil(READ_SIZE * (double)decoder.maxCharsPerByte()));
+			partial = new StringBuilder();
+			parser = new TimestampParser();
+			records = new ArrayDeque<Record>();
+			lastTime = Long.MIN_VALUE;
+		}
+
+		/**
+		 * @return true if something was read
+		 */
+		private boolean read(long now) throws IOException {
+			if(channel == null && !open()) {
+				return false;
+			}
+			long size = channel.size();
+			if(size < channel.position()) {
+				// truncated, start over
+				channel.position(0);
+				startOver();
+			}
+			if(size == channel.position()) {
+				if(isReplaced()) {
+					// the old file is drained, the new one is read from its start
+					// (e.g. logrotate create)
+					close();
+					identity = null;
+					position = 0;
+					startOver();
+				}
+				return false;
+			}
+			bytes.limit((int)Math.min(bytes.capacity(), bytes.position() + size - channel.position()));
+			channel.read(bytes);
+			position = channel.position();
+			bytes.flip();
+			decoder.decode(bytes, chars, false);
+			bytes.compact();
+			chars.flip();
+			while(chars.hasRemaining()) {
+				char c = chars.get();
+				partial.append(c);
+				if(c == '\n') {
+					addLine(partial.toString(), now);
+					partial.setLength(0);
+				}
+			}
+			chars.clear();
+			return true;
+		}
+
+		private boolean open() throws IOException {
+			try {
+				file = new RandomAccessFile(path, "r"); //$NON-NLS-1$
+			} catch(FileNotFoundException e) {
+				return false;
+			}
+			channel = file.getChannel();
+			Object previous = identity;
+			identity = readIdentity(path);
+			if(identity != null) {
+				tailedIdentities.add(identity);
+			}
+			if(isInitial) {
+				long start = Math.max(0, channel.size() - ILogViewerConstants.TAIL_MERGE_INITIAL_LOAD_SIZE);
+				channel.position(start);
+				skipFirstLine = start > 0;
+				isInitial = false;
+			} else if(channel.size() >= position && (previous == null || previous.equals(identity))) {
+				// the same file, the lines read before are not read again
+				channel.position(position);
+			} else {
+				// replaced or truncated meanwhile, the new content starts at 0
+				startOver();
+			}
+			return true;
+		}
+
+		private void startOver() {
+			decoder.reset();
+			bytes.clear();
+			partial.setLength(0);
+		}
+
+		/**
+		 * @return true if another file was created under the path
+		 */
+		private boolean isReplaced() {
+			if(identity == null) {
+				return false;
+			}
+			Object current = readIdentity(path);
+			return current != null && !current.equals(identity);
+		}
+
+		private void addLine(String line, long now) {
+			if(skipFirstLine) {
+				// the rest of a line in front of the initial load
+				skipFirstLine = false;
+				return;
+			}
+			long time = parser.parse(line);
+			if(time < 0) {
+				Record last = records.peekLast();
+				if(last != null) {
+					// e.g. a stack trace, keep it with its message
+					last.text.append(line);
+					return;
+				}
+				time = lastTime;
+			} else {
+				lastTime = time;
+			}
+			records.add(new Record(time, now, prefix + line));
+		}
+
+		private void close() {
+			if(file != null) {
+				try {
+					file.close();
+				} catch(IOException e) {
+					// ignore this
+				}
+			}
+			file = null;
+			channel = null;
+		}
+	}
+}
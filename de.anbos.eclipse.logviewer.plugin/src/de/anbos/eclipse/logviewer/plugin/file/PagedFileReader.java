@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+
+/**
+ * Reads line aligned pages of a file through short lived memory mappings, so
+ * any region of a multi-GB file can be loaded without keeping it on the heap.
+ */
+public class PagedFileReader extends AbstractPageSource {
+
+	// Attribute ---------------------------------------------------------------
+
+	private String filePath;
+
+	// Constructor -------------------------------------------------------------
+
+	public PagedFileReader(String filePath, Charset charset) {
+		super(charset);
+		this.filePath = filePath;
+	}
+
+	// Protected ---------------------------------------------------------------
+
+	protected long getSize() throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filePath, "r"); //$NON-NLS-1$
+		try {
+			return file.length();
+		} finally {
+			file.close();
+		}
+	}
+
+	protected ByteBuffer read(long start, int length) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filePath, "r"); //$NON-NLS-1$
+		try {
+			return file.getChannel().map(MapMode.READ_ONLY, start, length);
+		} finally {
+			file.close();
+		}
+	}
+}
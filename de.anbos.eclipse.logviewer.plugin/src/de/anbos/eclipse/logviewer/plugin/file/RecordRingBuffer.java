@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+/**
+ * Fixed size FIFO of log records. Nothing is overwritten, a full buffer rejects
+ * new records and counts them as dropped, so the producer can either stop
+ * reading (backpressure) or drop. Not thread safe.
+ */
+public class RecordRingBuffer {
+
+	// Attribute ---------------------------------------------------------------
+
+	private String[] records;
+	private int head;
+	private int size;
+	private long dropped;
+
+	// Constructor -------------------------------------------------------------
+
+	public RecordRingBuffer(int capacity) {
+		records = new String[capacity];
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @return false if the buffer is full, the record is counted as dropped then
+	 */
+	public boolean offer(String record) {
+		if(size == records.length) {
+			dropped++;
+			return false;
+		}
+		records[(head + size) % records.length] = record;
+		size++;
+		return true;
+	}
+
+	/**
+	 * appends the oldest records to the builder
+	 * @param maxChars stop after this many chars, at least one record is taken
+	 * @return the number of records taken
+	 */
+	public int drainTo(StringBuilder builder, int maxChars) {
+		int count = 0;
+		int start = builder.length();
+		while(size > 0 && (count == 0 || builder.length() - start + records[head].length() <= maxChars)) {
+			builder.append(records[head]);
+			records[head] = null;
+			head = (head + 1) % records.length;
+			size--;
+			count++;
+		}
+		return count;
+	}
+
+	public boolean isFull() {
+		return size == records.length;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return records.length;
+	}
+
+	/**
+	 * @return the number of records rejected since the buffer was created
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	public void clear() {
+		while(size > 0) {
+			records[head] = null;
+			head = (head + 1) % records.length;
+			size--;
+		}
+		head = 0;
+	}
+}
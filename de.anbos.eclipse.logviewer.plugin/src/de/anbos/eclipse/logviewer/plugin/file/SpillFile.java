@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+
+/**
+ * Append only temporary file which keeps the complete history of a document
+ * whose source can not be read again, e.g. a console or a stream. The text is
+ * stored as UTF-8 in memory mapped segments of SPILL_SEGMENT_SIZE bytes, so
+ * only the pages which are read or written are in memory. The document holds
+ * a window over it like over a file.
+ */
+public class SpillFile extends AbstractPageSource implements IHistoryStore {
+
+	// Constant ----------------------------------------------------------------
+
+	public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+	// Attribute ---------------------------------------------------------------
+
+	private File file;
+	private RandomAccessFile access;
+	private List<MappedByteBuffer> segments;
+	private long length;
+
+	// Constructor -------------------------------------------------------------
+
+	public SpillFile() {
+		super(CHARSET);
+		segments = new ArrayList<MappedByteBuffer>();
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#append(java.lang.String)
+	 */
+	public synchronized void append(String text) throws IOException {
+		// the temporary file is created with the first call
+		ByteBuffer bytes = CHARSET.encode(text);
+		while(bytes.hasRemaining()) {
+			int index = (int)(length / ILogViewerConstants.SPILL_SEGMENT_SIZE);
+			int offset = (int)(length % ILogViewerConstants.SPILL_SEGMENT_SIZE);
+			ByteBuffer segment = getSegment(index).duplicate();
+			segment.position(offset);
+			int count = Math.min(bytes.remaining(), segment.remaining());
+			ByteBuffer part = bytes.duplicate();
+			part.limit(part.position() + count);
+			segment.put(part);
+			bytes.position(bytes.position() + count);
+			length += count;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#getLength()
+	 */
+	public synchronized long getLength() {
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#getRetainedSize()
+	 */
+	public long getRetainedSize() {
+		// the mapped segments are not on the heap
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#clear()
+	 */
+	public synchronized void clear() {
+		length = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IHistoryStore#close()
+	 */
+	public synchronized void close() {
+		segments.clear();
+		length = 0;
+		if(access != null) {
+			try {
+				access.close();
+			} catch(IOException e) {
+				// ignore this
+			}
+			access = null;
+		}
+		if(file != null) {
+			// fails while a segment is still mapped on some platforms, deleteOnExit() takes care then
+			file.delete();
+			file = null;
+		}
+	}
+
+	// Protected ---------------------------------------------------------------
+
+	protected synchronized long getSize() {
+		return length;
+	}
+
+	protected synchronized ByteBuffer read(long start, int length) throws IOException {
+		if(start < 0 || start + length > this.length) {
+			throw new IOException("read behind the end of the spill file"); //$NON-NLS-1$
+		}
+		int index = (int)(start / ILogViewerConstants.SPILL_SEGMENT_SIZE);
+		int offset = (int)(start % ILogViewerConstants.SPILL_SEGMENT_SIZE);
+		if(offset + length <= ILogViewerConstants.SPILL_SEGMENT_SIZE) {
+			// within one segment, no copy
+			ByteBuffer segment = segments.get(index).duplicate();
+			segment.position(offset);
+			segment.limit(offset + length);
+			return segment.slice();
+		}
+		ByteBuffer result = ByteBuffer.allocate(length);
+		while(result.hasRemaining()) {
+			ByteBuffer segment = segments.get(index++).duplicate();
+			segment.position(offset);
+			segment.limit(Math.min(segment.capacity(), offset + result.remaining()));
+			result.put(segment);
+			offset = 0;
+		}
+		result.flip();
+		return result;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private MappedByteBuffer getSegment(int index) throws IOException {
+		if(index < segments.size()) {
+			return segments.get(index);
+		}
+		if(access == null) {
+			file = File.createTempFile("logviewer", ".spill"); //$NON-NLS-1$ //$NON-NLS-2$
+			file.deleteOnExit();
+			access = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		}
+		// mapping behind the end grows the file
+		MappedByteBuffer segment = access.getChannel().map(FileChannel.MapMode.READ_WRITE, (long)index * ILogViewerConstants.SPILL_SEGMENT_SIZE, ILogViewerConstants.SPILL_SEGMENT_SIZE);
+		segments.add(segment);
+		return segment;
+	}
+}
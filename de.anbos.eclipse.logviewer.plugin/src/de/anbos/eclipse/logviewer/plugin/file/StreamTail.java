@@ -0,0 +1,381 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Locale;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.Logger;
+
+/**
+ * Receives newline framed log records on a local port, e.g. from a log4j
+ * socket appender with a pattern layout. The path is tcp://[host]:port or
+ * udp://[host]:port, without a host all interfaces are used.
+ *
+ * Received records are kept in a RecordRingBuffer which is handed to the
+ * listener at most every read wait milliseconds. If it is full, tcp
+ * connections are not read anymore until it has room again, so the senders
+ * are slowed down by tcp flow control. Datagrams can't be held back, they are
+ * dropped and counted instead.
+ */
+public class StreamTail implements ITailSource {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final String TCP = "tcp"; //$NON-NLS-1$
+	private static final String UDP = "udp"; //$NON-NLS-1$
+
+	// Attribute ---------------------------------------------------------------
+
+	private Logger logger;
+	private String address;
+	private Charset charset;
+	private IFileChangedListener listener;
+	private volatile TailTask task;
+
+	private Selector selector;
+	private ServerSocketChannel server;
+	private DatagramChannel datagrams;
+	private ByteBuffer datagramBuffer;
+	private RecordRingBuffer records;
+
+	private boolean isFirstTimeRead;
+	private boolean isOpenWarningShown;
+	private int readwait;
+	private int deliverySize;
+	private long lastDelivery;
+	private long reportedDrops;
+
+	// Constructor -------------------------------------------------------------
+
+	public StreamTail(String address, Charset charset, IFileChangedListener listener) {
+		logger = LogViewerPlugin.getDefault().getLogger();
+		this.address = address;
+		this.charset = charset;
+		this.listener = listener;
+	}
+
+	// Static ------------------------------------------------------------------
+
+	/**
+	 * @return the socket address of a tcp:// or udp:// path, null if the path
+	 * is none of these
+	 */
+	public static InetSocketAddress parseAddress(String address) {
+		String value = address.trim().toLowerCase(Locale.ENGLISH);
+		if(!value.startsWith(TCP + "://") && !value.startsWith(UDP + "://")) { //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		}
+		// java.net.URI does not accept an empty host
+		String hostAndPort = value.substring(TCP.length() + 3);
+		int colon = hostAndPort.lastIndexOf(':');
+		if(colon < 0) {
+			return null;
+		}
+		String host = hostAndPort.substring(0, colon);
+		if(host.startsWith("[") && host.endsWith("]")) { //$NON-NLS-1$ //$NON-NLS-2$
+			host = host.substring(1, host.length() - 1);
+		}
+		try {
+			int port = Integer.parseInt(hostAndPort.substring(colon + 1));
+			return host.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+		} catch(IllegalArgumentException e) {
+			// no number or out of range
+			return null;
+		}
+	}
+
+	// Public ------------------------------------------------------------------
+
+	public void setMonitorStatus(boolean monitor) {
+		TailTask current = task;
+		boolean isRunning = current != null && current.isActive();
+		if(isRunning == monitor) {
+			return;
+		}
+		if(monitor) {
+			task = TailScheduler.getInstance().schedule(this);
+		} else {
+			task = null;
+			current.cancel();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#start()
+	 */
+	public void start() {
+		readwait = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_READWAIT);
+		deliverySize = Math.max(ILogViewerConstants.TAIL_MIN_READ_SIZE, LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_BUFFER));
+		records = new RecordRingBuffer(ILogViewerConstants.STREAM_RING_CAPACITY);
+		isFirstTimeRead = true;
+		isOpenWarningShown = false;
+		lastDelivery = 0;
+		reportedDrops = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#poll()
+	 */
+	public long poll() {
+		try {
+			if(selector == null && !open()) {
+				return ILogViewerConstants.TAIL_FILEOPEN_ERROR_WAIT;
+			}
+			boolean received = receive();
+			long now = System.currentTimeMillis();
+			if(!records.isEmpty() || records.getDropped() > reportedDrops) {
+				if(!isFirstTimeRead && !listener.isReady()) {
+					// the view is behind, the records stay in the ring which pushes
+					// back on the senders or counts what it drops
+					return ILogViewerConstants.TAIL_BUSY_WAIT;
+				}
+				if(now - lastDelivery >= readwait) {
+					deliver(now);
+				}
+				// more records are due with the next delivery
+				return Math.max(0, lastDelivery + readwait - now);
+			}
+			return received ? 0 : readwait;
+		} catch(IOException ioe) {
+			logger.logError(ioe);
+			listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.error",new String[]{address}).toCharArray(),true);
+		}
+		return STOP;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.ITailSource#stop()
+	 */
+	public void stop() {
+		if(selector != null) {
+			for(SelectionKey key : selector.keys()) {
+				close(key.channel());
+			}
+			close(selector);
+		}
+		selector = null;
+		server = null;
+		datagrams = null;
+		datagramBuffer = null;
+		if(records != null) {
+			records.clear();
+		}
+	}
+
+	// Private -----------------------------------------------------------------
+
+	/**
+	 * binds the port once, the scheduler retries later on if it is in use
+	 * @return false if the port is not available (yet)
+	 */
+	private boolean open() throws IOException {
+		InetSocketAddress socketAddress = parseAddress(address);
+		if(socketAddress == null) {
+			throw new IOException("not a tcp:// or udp:// address: " + address); //$NON-NLS-1$
+		}
+		selector = Selector.open();
+		try {
+			if(address.trim().toLowerCase(Locale.ENGLISH).startsWith(UDP)) {
+				datagrams = DatagramChannel.open();
+				datagrams.configureBlocking(false);
+				datagrams.bind(socketAddress);
+				datagrams.register(selector, SelectionKey.OP_READ);
+				datagramBuffer = ByteBuffer.allocate(ILogViewerConstants.STREAM_READ_SIZE);
+			} else {
+				server = ServerSocketChannel.open();
+				server.configureBlocking(false);
+				server.bind(socketAddress);
+				server.register(selector, SelectionKey.OP_ACCEPT);
+			}
+		} catch(IOException ioe) {
+			// e.g. the port is in use by another tab or process
+			if(datagrams != null) {
+				close(datagrams);
+			}
+			if(server != null) {
+				close(server);
+			}
+			stop();
+			if(!isOpenWarningShown) {
+				logger.logWarning("unable to listen on " + address + ": " + ioe.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+				listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.file.warning",new String[]{address}).toCharArray(),true);
+				isOpenWarningShown = true;
+			}
+			return false;
+		}
+		listener.fileChanged(LogViewerPlugin.getResourceString("tail.loading.stream",new String[]{address}).toCharArray(),true);
+		return true;
+	}
+
+	/**
+	 * accepts connections and reads whatever is available without blocking
+	 * @return true if something was received
+	 */
+	private boolean receive() throws IOException {
+		for(SelectionKey key : selector.keys()) {
+			if(key.attachment() instanceof Connection) {
+				// records held back while the ring buffer was full
+				((Connection)key.attachment()).frame(records);
+			}
+		}
+		if(selector.selectNow() == 0) {
+			return false;
+		}
+		boolean received = false;
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while(keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			if(!key.isValid()) {
+				continue;
+			}
+			if(key.isAcceptable()) {
+				SocketChannel client = server.accept();
+				if(client != null) {
+					client.configureBlocking(false);
+					client.register(selector, SelectionKey.OP_READ, new Connection());
+				}
+			} else if(key.channel() == datagrams) {
+				received |= receiveDatagrams();
+			} else if(records.isFull()) {
+				// backpressure: the data stays in the socket buffers until there is room
+				continue;
+			} else {
+				received |= receiveStream(key);
+			}
+		}
+		return received;
+	}
+
+	private boolean receiveDatagrams() throws IOException {
+		boolean received = false;
+		while(true) {
+			datagramBuffer.clear();
+			if(datagrams.receive(datagramBuffer) == null) {
+				return received;
+			}
+			received = true;
+			datagramBuffer.flip();
+			String text = charset.decode(datagramBuffer).toString();
+			// a datagram is complete, a missing line feed at its end is added
+			int start = 0;
+			while(start < text.length()) {
+				int end = text.indexOf('\n', start);
+				end = end < 0 ? text.length() : end + 1;
+				String record = text.substring(start, end);
+				records.offer(record.endsWith("\n") ? record : record + '\n'); //$NON-NLS-1$
+				start = end;
+			}
+		}
+	}
+
+	private boolean receiveStream(SelectionKey key) throws IOException {
+		SocketChannel client = (SocketChannel)key.channel();
+		Connection connection = (Connection)key.attachment();
+		int count;
+		try {
+			count = client.read(connection.buffer);
+		} catch(IOException e) {
+			// connection reset by the sender
+			count = -1;
+		}
+		if(count < 0) {
+			connection.buffer.flip();
+			if(connection.buffer.hasRemaining()) {
+				records.offer(charset.decode(connection.buffer).toString() + '\n');
+			}
+			key.cancel();
+			close(client);
+			return true;
+		}
+		connection.frame(records);
+		return count > 0;
+	}
+
+	/**
+	 * hands the oldest records to the listener, plus a note about dropped ones
+	 */
+	private void deliver(long now) {
+		StringBuilder text = new StringBuilder();
+		long dropped = records.getDropped();
+		if(dropped > reportedDrops) {
+			text.append(LogViewerPlugin.getResourceString("tail.loading.stream.dropped",new String[]{Long.toString(dropped - reportedDrops)})); //$NON-NLS-1$
+			reportedDrops = dropped;
+		}
+		records.drainTo(text, deliverySize);
+		listener.contentAboutToBeChanged();
+		listener.fileChanged(text.toString().toCharArray(), isFirstTimeRead);
+		isFirstTimeRead = false;
+		lastDelivery = now;
+	}
+
+	private void close(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch(IOException e) {
+			// ignore this
+		}
+	}
+
+	// Inner classes ----------------------------------------------------------------
+
+	/**
+	 * bytes of one tcp connection which do not make a complete record yet
+	 */
+	private class Connection {
+
+		private ByteBuffer buffer = ByteBuffer.allocate(ILogViewerConstants.STREAM_READ_SIZE);
+
+		/**
+		 * moves all complete records to the ring buffer as long as it has room,
+		 * a record longer than the buffer is split
+		 */
+		private void frame(RecordRingBuffer ring) {
+			buffer.flip();
+			int start = buffer.position();
+			for(int i = start; i < buffer.limit() && !ring.isFull(); i++) {
+				if(buffer.get(i) == '\n') {
+					ring.offer(decode(start, i + 1));
+					start = i + 1;
+				}
+			}
+			if(start == 0 && buffer.limit() == buffer.capacity() && !ring.isFull()) {
+				ring.offer(decode(0, buffer.limit()) + '\n');
+				start = buffer.limit();
+			}
+			buffer.position(start);
+			buffer.compact();
+		}
+
+		private String decode(int start, int end) {
+			ByteBuffer record = buffer.duplicate();
+			record.position(start);
+			record.limit(end);
+			return charset.decode(record).toString();
+		}
+	}
+}
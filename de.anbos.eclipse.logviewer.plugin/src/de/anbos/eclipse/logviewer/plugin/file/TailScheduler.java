@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+
+/**
+ * Runs all tail sources on a small shared pool of daemon threads instead of one
+ * thread per source. Every poll is a separate pool task, so a busy source yields
+ * to the others between two reads.
+ */
+public class TailScheduler {
+
+	// Constant ----------------------------------------------------------------
+
+	private static TailScheduler instance;
+
+	// Attribute ---------------------------------------------------------------
+
+	private ScheduledThreadPoolExecutor executor;
+	private Map<ITailSource, TailTask> tasks;
+
+	// Constructor -------------------------------------------------------------
+
+	private TailScheduler() {
+		tasks = new IdentityHashMap<ITailSource, TailTask>();
+		int threads = Math.max(1, Math.min(ILogViewerConstants.TAIL_SCHEDULER_MAX_THREADS, Runtime.getRuntime().availableProcessors() / 2));
+		executor = new ScheduledThreadPoolExecutor(threads, new TailThreadFactory());
+		executor.setRemoveOnCancelPolicy(true);
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	// Static ------------------------------------------------------------------
+
+	public static synchronized TailScheduler getInstance() {
+		if(instance == null) {
+			instance = new TailScheduler();
+		}
+		return instance;
+	}
+
+	/**
+	 * cancels all tasks and stops the pool threads, a later getInstance()
+	 * creates a new scheduler
+	 */
+	public static void shutdown() {
+		TailScheduler scheduler;
+		synchronized(TailScheduler.class) {
+			scheduler = instance;
+			instance = null;
+		}
+		if(scheduler != null) {
+			scheduler.dispose();
+		}
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * schedules the source for an immediate first poll. If the source still has
+	 * a task which is just being cancelled, the new task starts after the old one
+	 * has stopped the source.
+	 */
+	public TailTask schedule(ITailSource source) {
+		TailTask task = new TailTask(this, source);
+		TailTask previous;
+		synchronized(this) {
+			previous = tasks.put(source, task);
+		}
+		if(previous == null || !previous.cancel(task)) {
+			synchronized(this) {
+				task.submit(0);
+			}
+		}
+		return task;
+	}
+
+	// Package -----------------------------------------------------------------
+
+	ScheduledThreadPoolExecutor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * must be called with the monitor held
+	 */
+	void taskFinished(ITailSource source, TailTask task) {
+		if(tasks.get(source) == task) {
+			tasks.remove(source);
+		}
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private void dispose() {
+		List<TailTask> toCancel;
+		synchronized(this) {
+			toCancel = new ArrayList<TailTask>(tasks.values());
+		}
+		for(TailTask task : toCancel) {
+			task.cancel();
+		}
+		executor.shutdown();
+		try {
+			executor.awaitTermination(ILogViewerConstants.TAIL_SCHEDULER_SHUTDOWN_WAIT, TimeUnit.MILLISECONDS);
+		} catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Inner classes ----------------------------------------------------------------
+
+	private static class TailThreadFactory implements ThreadFactory {
+
+		private AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "LogViewer Tail " + count.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
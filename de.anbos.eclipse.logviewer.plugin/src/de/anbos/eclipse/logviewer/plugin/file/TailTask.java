@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+
+/**
+ * One scheduled ITailSource. Created by the TailScheduler, all state changes are
+ * guarded by the scheduler's monitor while the source itself is always called
+ * outside of it.
+ */
+public class TailTask implements Runnable {
+
+	// Attribute ---------------------------------------------------------------
+
+	private TailScheduler scheduler;
+	private ITailSource source;
+	private ScheduledFuture<?> future;
+	private TailTask successor;
+
+	private boolean started;
+	private boolean running;
+	private boolean wakeRequested;
+	private boolean cancelled;
+	private boolean finished;
+
+	// Constructor -------------------------------------------------------------
+
+	TailTask(TailScheduler scheduler, ITailSource source) {
+		this.scheduler = scheduler;
+		this.source = source;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @return true as long as the task was neither cancelled nor has stopped by itself
+	 */
+	public boolean isActive() {
+		synchronized(scheduler) {
+			return !cancelled && !finished;
+		}
+	}
+
+	/**
+	 * polls the source as soon as possible, e.g. after a change notification
+	 */
+	public void wakeUp() {
+		synchronized(scheduler) {
+			if(cancelled || finished) {
+				return;
+			}
+			if(running) {
+				wakeRequested = true;
+				return;
+			}
+			if(future != null && !future.cancel(false)) {
+				// already about to run
+				return;
+			}
+			future = null;
+			submit(0);
+		}
+	}
+
+	/**
+	 * stops polling, the source gets stopped by the calling thread or, if it is
+	 * polled right now, by the pool thread afterwards
+	 */
+	public void cancel() {
+		cancel(null);
+	}
+
+	public void run() {
+		boolean doStart;
+		synchronized(scheduler) {
+			if(cancelled || finished) {
+				return;
+			}
+			running = true;
+			wakeRequested = false;
+			future = null;
+			doStart = !started;
+			started = true;
+		}
+		long delay = ITailSource.STOP;
+		try {
+			if(doStart) {
+				source.start();
+			}
+			delay = source.poll();
+		} catch(RuntimeException e) {
+			LogViewerPlugin.getDefault().getLogger().logError("tail source failed", e); //$NON-NLS-1$
+		}
+		boolean done;
+		synchronized(scheduler) {
+			running = false;
+			done = cancelled || delay == ITailSource.STOP;
+			if(!done) {
+				if(wakeRequested) {
+					delay = 0;
+				}
+				if(delay != ITailSource.IDLE) {
+					done = !submit(delay);
+				}
+			}
+		}
+		if(done) {
+			finish();
+		}
+	}
+
+	// Package -----------------------------------------------------------------
+
+	/**
+	 * cancels this task and hands over to the given successor once the source
+	 * was stopped
+	 * @return true if the successor gets submitted by this task later on
+	 */
+	boolean cancel(TailTask next) {
+		synchronized(scheduler) {
+			if(finished) {
+				return false;
+			}
+			cancelled = true;
+			successor = next;
+			if(running) {
+				return next != null;
+			}
+			if(future != null) {
+				future.cancel(false);
+				future = null;
+			}
+		}
+		finish();
+		return next != null;
+	}
+
+	/**
+	 * must be called with the scheduler's monitor held
+	 */
+	boolean submit(long delay) {
+		if(cancelled || finished) {
+			return false;
+		}
+		try {
+			future = scheduler.getExecutor().schedule(this, Math.max(0, delay), TimeUnit.MILLISECONDS);
+			return true;
+		} catch(RejectedExecutionException ree) {
+			// scheduler is shutting down
+			return false;
+		}
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private void finish() {
+		TailTask next;
+		boolean doStop;
+		synchronized(scheduler) {
+			if(finished) {
+				return;
+			}
+			finished = true;
+			next = successor;
+			doStop = started;
+			scheduler.taskFinished(source, this);
+		}
+		if(doStop) {
+			try {
+				source.stop();
+			} catch(RuntimeException e) {
+				LogViewerPlugin.getDefault().getLogger().logError("unable to stop tail source", e); //$NON-NLS-1$
+			}
+		}
+		if(next != null) {
+			synchronized(scheduler) {
+				next.submit(0);
+			}
+		}
+	}
+}
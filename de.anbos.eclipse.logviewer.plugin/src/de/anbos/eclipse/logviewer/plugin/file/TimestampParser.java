@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the timestamp near the start of a log line. Understands ISO like
+ * dates (yyyy-MM-dd HH:mm:ss, optionally with 'T' and fractions) and plain
+ * times of day (HH:mm:ss,SSS) as written by the default log4j layouts.
+ */
+public class TimestampParser {
+
+	// Constant ----------------------------------------------------------------
+
+	/* only the start of a line is searched, the message may contain other times */
+	private static final int SEARCH_LENGTH = 64;
+
+	private static final Pattern DATE_TIME = Pattern.compile(
+			"(\\d{4})-(\\d{2})-(\\d{2})[ T](\\d{2}):(\\d{2}):(\\d{2})(?:[.,](\\d{1,9}))?"); //$NON-NLS-1$
+	private static final Pattern TIME = Pattern.compile(
+			"(?<!\\d)(\\d{2}):(\\d{2}):(\\d{2})(?:[.,](\\d{1,9}))?"); //$NON-NLS-1$
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	// Attribute ---------------------------------------------------------------
+
+	private Matcher dateTime;
+	private Matcher time;
+
+	// Constructor -------------------------------------------------------------
+
+	public TimestampParser() {
+		dateTime = DATE_TIME.matcher(""); //$NON-NLS-1$
+		time = TIME.matcher(""); //$NON-NLS-1$
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @return the timestamp of the line in milliseconds, days counted from
+	 * 1970-01-01 without a time zone, or -1 if the line has none
+	 */
+	public long parse(CharSequence line) {
+		CharSequence start = line.length() > SEARCH_LENGTH ? line.subSequence(0, SEARCH_LENGTH) : line;
+		dateTime.reset(start);
+		if(dateTime.find()) {
+			try {
+				long days = LocalDate.of(number(dateTime, 1), number(dateTime, 2), number(dateTime, 3)).toEpochDay();
+				return days * MILLIS_PER_DAY + millisOfDay(dateTime, 4);
+			} catch(DateTimeException e) {
+				// not a date after all, e.g. a version number
+			}
+		}
+		time.reset(start);
+		if(time.find()) {
+			return millisOfDay(time, 1);
+		}
+		return -1;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private static long millisOfDay(Matcher matcher, int hourGroup) {
+		long millis = ((number(matcher, hourGroup) * 60L + number(matcher, hourGroup + 1)) * 60L + number(matcher, hourGroup + 2)) * 1000L;
+		String fraction = matcher.group(hourGroup + 3);
+		if(fraction != null) {
+			// milliseconds, more digits are cut off
+			String digits = (fraction + "00").substring(0, 3); //$NON-NLS-1$
+			millis += Integer.parseInt(digits);
+		}
+		return millis;
+	}
+
+	private static int number(Matcher matcher, int group) {
+		return Integer.parseInt(matcher.group(group));
+	}
+}
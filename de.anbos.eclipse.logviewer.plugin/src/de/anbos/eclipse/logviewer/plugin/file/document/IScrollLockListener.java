@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file.document;
+
+public interface IScrollLockListener {
+
+	/**
+	 * called on the UI thread when the scroll lock of the document was switched
+	 * or the number of lines held back by it changed
+	 * @param lines the number of new lines which are not shown yet
+	 */
+	public void bufferChanged(LogDocument document, int lines);
+}
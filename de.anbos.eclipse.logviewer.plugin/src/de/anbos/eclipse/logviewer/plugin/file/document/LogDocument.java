@@ -16,18 +16,22 @@
 
 package de.anbos.eclipse.logviewer.plugin.file.document;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.AbstractDocument;
 import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.DefaultLineTracker;
-import org.eclipse.jface.text.DocumentEvent;
-import org.eclipse.jface.text.GapTextStore;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
-import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.PartInitException;
 
 import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
@@ -35,6 +39,10 @@ import de.anbos.eclipse.logviewer.plugin.LogFile;
 import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
 import de.anbos.eclipse.logviewer.plugin.file.BackgroundReader;
 import de.anbos.eclipse.logviewer.plugin.file.IFileChangedListener;
+import de.anbos.eclipse.logviewer.plugin.file.CompressedBlockStore;
+import de.anbos.eclipse.logviewer.plugin.file.IHistoryStore;
+import de.anbos.eclipse.logviewer.plugin.file.IPageSource;
+import de.anbos.eclipse.logviewer.plugin.file.SpillFile;
 
 public class LogDocument extends AbstractDocument implements IFileChangedListener {
 
@@ -45,8 +53,42 @@ public class LogDocument extends AbstractDocument implements IFileChangedListene
 	private String encoding;
 	private BackgroundReader reader;
 	private boolean monitor;
+	private IPropertyChangeListener propertyChangeListener;
 
 	private int backlogLines;
+	// chars of the backlog from the preferences and from the memory governor, 0 for no limit
+	private int backlogSize;
+	private int sizeLimit;
+	// where the lines in front of the first read are inserted, -1 if that part is gone
+	private int headOffset;
+
+	// paged mode: the document holds the bytes [windowStart, windowEnd) of the file
+	private IPageSource pageSource;
+	// the page source of tails which can not be read again
+	private IHistoryStore history;
+	private long windowStart;
+	private long windowEnd;
+	private long tailEnd;
+	private long pendingStart;
+	private long pendingEnd;
+	private int headerLength;
+	private boolean detached;
+	private boolean loadingPage;
+	private boolean trimming;
+
+	// written by the tail, the position of the chunk passed to fileChanged() next
+	private long readStart = -1;
+	private long readEnd;
+	private ConcurrentLinkedQueue<PendingUpdate> updates = new ConcurrentLinkedQueue<PendingUpdate>();
+	private AtomicInteger pendingUpdates = new AtomicInteger();
+	private AtomicBoolean updateScheduled = new AtomicBoolean();
+
+	// scroll lock: the updates are held back on the UI thread until it is released
+	private boolean scrollLocked;
+	private ArrayDeque<PendingUpdate> lockedUpdates = new ArrayDeque<PendingUpdate>();
+	private int lockedLines;
+	private int lockedChars;
+	private List<IScrollLockListener> scrollLockListeners = new ArrayList<IScrollLockListener>();
 
 	// Constructor -------------------------------------------------------------
 
@@ -59,12 +101,18 @@ public class LogDocument extends AbstractDocument implements IFileChangedListene
 		this.encoding = file.getEncoding();
 		this.charset = Charset.forName(file.getEncoding());
 		IPreferenceStore store = LogViewerPlugin.getDefault().getPreferenceStore();
-		store.addPropertyChangeListener(new PropertyChangeListener());
+		propertyChangeListener = new PropertyChangeListener();
+		store.addPropertyChangeListener(propertyChangeListener);
 		backlogLines = store.getInt(ILogViewerConstants.PREF_BACKLOG);
-		setTextStore(new GapTextStore(50, 300, 1f));
-		setLineTracker(new DefaultLineTracker());
+		backlogSize = store.getInt(ILogViewerConstants.PREF_BACKLOG_SIZE) * 1024;
+		LogTextStore textStore = new LogTextStore();
+		setTextStore(textStore);
+		setLineTracker(new LogLineTracker(textStore));
 		completeInitialization();
+		resetWindow();
 		reader = new BackgroundReader(file.getType(), file.getPath(), file.getNamePattern(), charset,this);
+		pageSource = createPageSource();
+		MemoryGovernor.getInstance().documentOpened(this);
 	}
 
 	// Public ------------------------------------------------------------------
@@ -80,6 +128,7 @@ public class LogDocument extends AbstractDocument implements IFileChangedListene
 		this.charset = Charset.forName(encoding);
 		try {
 			reader = new BackgroundReader(file.getType(), file.getPath(), file.getNamePattern(), charset, this);
+			pageSource = createPageSource();
 		} catch (SecurityException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -121,10 +170,11 @@ public class LogDocument extends AbstractDocument implements IFileChangedListene
 	 */
 	public void synchronize() {
 		setMonitor(false);
-		getStore().set("");
-		getTracker().set("");
+		set(""); //$NON-NLS-1$
+		resetWindow();
 		try {
 			reader = new BackgroundReader(file.getType(), file.getPath(), file.getNamePattern(), charset, this);
+			pageSource = createPageSource();
 		} catch (SecurityException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -175,8 +225,12 @@ public class LogDocument extends AbstractDocument implements IFileChangedListene
 	 */
 	public void setMonitor(boolean monitorIn) {
 		if(monitorIn && !monitor) {
-			getStore().set(""); //$NON-NLS-1$
-			getTracker().set(""); //$NON-NLS-1$
+			dropPendingUpdates();
+			if(history != null) {
+				history.clear();
+			}
+			set(""); //$NON-NLS-1$
+			resetWindow();
 		}
 		monitor = monitorIn;
 		reader.setMonitorStatus(monitor);
@@ -191,69 +245,789 @@ public class LogDocument extends AbstractDocument implements IFileChangedListene
 	 * @see de.anbos.eclipse.logviewer.plugin.file.IFileChangedListener#contentAboutToBeChanged()
 	 */
 	public void contentAboutToBeChanged() {
-        Runnable runnable = new Runnable() {
-            public void run() {
-        		DocumentEvent event = new DocumentEvent(LogDocument.this, getStore().getLength(),0,""); //$NON-NLS-1$
-        		fireDocumentAboutToBeChanged(event);
-            }
-        };
-        if(Display.getDefault() != null) {
-            Display.getDefault().asyncExec(runnable);
-        }
+		// nothing to do, fileChanged() replaces the affected ranges only and
+		// fires the events for them
 	}
 
 	/* (non-Javadoc)
 	 * @see de.anbos.eclipse.logviewer.plugin.file.IFileChangedListener#fileChanged(char[])
 	 */
-	public void fileChanged(final char[] content, final boolean isFirstTimeRead) {
-        Runnable runnable = new Runnable() {
-            public void run() {
-        		String text = new String(content);
-        		int offset = calculateBacklogOffset();
-    			String currentText = getStore().get(offset,getStore().getLength() - offset);
-        		currentText = currentText.concat(text);
-        		getStore().set(currentText);
-        		getTracker().set(currentText);
-        		if(isFirstTimeRead) {
-        			offset = calculateBacklogOffset();
-        			currentText = getStore().get(offset,getStore().getLength() - offset);
-        			getStore().set(currentText);
-        			getTracker().set(currentText);
-        		}
-        		//int newOffset = getStore().getLength() > content.length ? getStore().getLength() - content.length : 0;
-        		DocumentEvent event = new DocumentEvent(LogDocument.this, getStore().getLength(), content.length, text);
-        		fireDocumentChanged(event);
-            }
-        };
-        if(Display.getDefault() != null) {
-            Display.getDefault().asyncExec(runnable);
-        }
+	public void fileChanged(char[] content, boolean isFirstTimeRead) {
+		queueUpdate(new PendingUpdate(content, isFirstTimeRead, false, readStart, readEnd));
+		readStart = -1;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IFileChangedListener#isReady()
+	 */
+	public boolean isReady() {
+		return pendingUpdates.get() < ILogViewerConstants.UI_UPDATE_MAX_PENDING;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IFileChangedListener#filePositionChanged(long, long)
+	 */
+	public void filePositionChanged(long start, long end) {
+		// the tail calls fileChanged() next, from the same thread
+		readStart = start;
+		readEnd = end;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.anbos.eclipse.logviewer.plugin.file.IFileChangedListener#fileHeadLoaded(char[], long, long)
+	 */
+	public void fileHeadLoaded(char[] content, long start, long end) {
+		queueUpdate(new PendingUpdate(content, false, true, start, end));
+	}
+
+	/**
+	 * stops the tail and releases the history kept outside of the document,
+	 * e.g. when the tab is closed
+	 */
+	public void dispose() {
+		setMonitor(false);
+		dropPendingUpdates();
+		releaseHistory();
+		pageSource = null;
+		LogViewerPlugin.getDefault().getPreferenceStore().removePropertyChangeListener(propertyChangeListener);
+		MemoryGovernor.getInstance().documentClosed(this);
+	}
+
+	/**
+	 * @return the current text of the document without copying it. It must
+	 * be read on the UI thread only and changes with the document, use
+	 * getSnapshot() to keep the text.
+	 */
+	public CharSequence getText() {
+		return (LogTextStore)getStore();
+	}
+
+	/**
+	 * @return the text of the document without copying it. May be called from
+	 * any thread, the snapshot does not change while the tail keeps appending.
+	 * It has to be closed once it is read.
+	 */
+	public LogSnapshot getSnapshot() {
+		return ((LogTextStore)getStore()).snapshot();
+	}
+
+	/**
+	 * @return the number of the line which stays the same while it is in the
+	 * backlog, see LogLineTracker.getLineSequence()
+	 */
+	public long getLineSequence(int line) {
+		return ((LogLineTracker)getTracker()).getLineSequence(line);
+	}
+
+	/**
+	 * @return the line which has the number or -1 if it is gone, see
+	 * LogLineTracker.getLineOfSequence()
+	 */
+	public int getLineOfSequence(long sequence) {
+		return ((LogLineTracker)getTracker()).getLineOfSequence(sequence);
+	}
+
+	/**
+	 * @return the bytes kept by the document: its text and lines, the updates
+	 * held back by the scroll lock and the history kept on the heap
+	 */
+	public long getRetainedSize() {
+		long size = ((LogTextStore)getStore()).getRetainedSize() + ((LogLineTracker)getTracker()).getRetainedSize();
+		size += 2L * lockedChars;
+		if(history != null) {
+			size += history.getRetainedSize();
+		}
+		return size;
 	}
 
 	public LogFile getFile() {
 		return file;
 	}
 
-	// Private -----------------------------------------------------------------
+	/**
+	 * while the scroll lock is set the updates of the tail are collected aside
+	 * and the document is not changed, so the view stays where it is. Only
+	 * the newest updates which fill the backlog are kept. Releasing the lock
+	 * appends them at once. Must be called from the UI thread.
+	 */
+	public void setScrollLock(boolean lock) {
+		if(lock == scrollLocked) {
+			return;
+		}
+		scrollLocked = lock;
+		if(!lock) {
+			lockedLines = 0;
+			lockedChars = 0;
+			applyMerged(lockedUpdates, lockedUpdates.size());
+		}
+		fireBufferChanged();
+	}
+
+	public boolean isScrollLocked() {
+		return scrollLocked;
+	}
 
 	/**
-	 * @return the offset from where we have to read on in the Store
+	 * @return the number of lines held back by the scroll lock
 	 */
-	private int calculateBacklogOffset() {
-		int numberOfLines = getTracker().getNumberOfLines();
-		if(numberOfLines <= backlogLines) {
+	public int getBufferedLines() {
+		return lockedLines;
+	}
+
+	public void addScrollLockListener(IScrollLockListener listener) {
+		scrollLockListeners.add(listener);
+	}
+
+	public void removeScrollLockListener(IScrollLockListener listener) {
+		scrollLockListeners.remove(listener);
+	}
+
+	/**
+	 * @return true if the document is a window over the whole file which can be
+	 * moved with loadPreviousPage() and loadNextPage()
+	 */
+	public boolean isPaged() {
+		return pageSource != null && windowStart >= 0;
+	}
+
+	public boolean hasPreviousPage() {
+		return isPaged() && windowStart > 0;
+	}
+
+	/**
+	 * @return true if the window does not reach the end of the file, the tail
+	 * does not update the document until loadNextPage() caught up again
+	 */
+	public boolean isDetached() {
+		return detached;
+	}
+
+	/**
+	 * @return false while a page is loaded or the window does not show the end
+	 * of the file, the view should not jump to the bottom then
+	 */
+	public boolean isFollowingTail() {
+		return !detached && !loadingPage;
+	}
+
+	/**
+	 * @return true while the lines exceeding the backlog are dropped at the
+	 * top, that change comes with an append and needs no update of the view
+	 * of its own
+	 */
+	public boolean isTrimming() {
+		return trimming;
+	}
+
+	/**
+	 * loads the page in front of the window. If the backlog is exceeded the lines
+	 * at the bottom are dropped and the document gets detached from the tail.
+	 * Must be called from the UI thread.
+	 * @return the number of lines inserted at the top
+	 */
+	public int loadPreviousPage() {
+		if(!hasPreviousPage()) {
+			return 0;
+		}
+		IPageSource.Page page;
+		try {
+			page = pageSource.readBefore(windowStart, ILogViewerConstants.PAGE_SIZE);
+		} catch(IOException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+			return 0;
+		}
+		if(page == null || page.getText().length() == 0) {
+			return 0;
+		}
+		loadingPage = true;
+		try {
+			int firstLine = getLineOfOffset(headerLength);
+			replace(headerLength, 0, page.getText());
+			windowStart = page.getStart();
+			int lines = getLineOfOffset(headerLength + page.getText().length()) - firstLine;
+			trimBottom();
+			return lines;
+		} catch(BadLocationException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+			return 0;
+		} finally {
+			loadingPage = false;
+		}
+	}
+
+	/**
+	 * loads the page behind the window of a detached document and drops lines at
+	 * the top if the backlog is exceeded. Once the end of the tail is reached the
+	 * document follows the tail again. Must be called from the UI thread.
+	 * @return the number of lines dropped at the top
+	 */
+	public int loadNextPage() {
+		if(!isPaged() || !detached) {
+			return 0;
+		}
+		IPageSource.Page page;
+		try {
+			page = pageSource.readAfter(windowEnd, ILogViewerConstants.PAGE_SIZE, tailEnd);
+		} catch(IOException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+			return 0;
+		}
+		if(page == null) {
+			detached = false;
+			return 0;
+		}
+		loadingPage = true;
+		try {
+			replace(getLength(), 0, page.getText());
+			windowEnd = page.getEnd();
+			if(windowEnd >= tailEnd) {
+				detached = false;
+			}
+			return trimTop();
+		} catch(BadLocationException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
 			return 0;
+		} finally {
+			loadingPage = false;
+		}
+	}
+
+	/**
+	 * replaces the window by the page starting at the given file position, e.g.
+	 * the start of a line looked up in the line index. The document stays
+	 * detached until loadNextPage() reaches the tail again. Must be called from
+	 * the UI thread.
+	 * @return false if the document is not paged or there is nothing to show
+	 */
+	public boolean loadPageAt(long position) {
+		if(!isPaged()) {
+			return false;
+		}
+		IPageSource.Page page;
+		try {
+			page = pageSource.readAfter(position, ILogViewerConstants.PAGE_SIZE, tailEnd);
+		} catch(IOException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+			return false;
+		}
+		if(page == null) {
+			return false;
+		}
+		loadingPage = true;
+		try {
+			replace(0, getLength(), page.getText());
+			windowStart = page.getStart();
+			windowEnd = page.getEnd();
+			headerLength = 0;
+			detached = windowEnd < tailEnd;
+			return true;
+		} catch(BadLocationException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+			return false;
+		} finally {
+			loadingPage = false;
+		}
+	}
+
+	// Package -----------------------------------------------------------------
+
+	/**
+	 * limits the backlog in addition to the preferences, used by the memory
+	 * governor
+	 * @param chars the maximum length of the text, 0 for no limit
+	 */
+	void setSizeLimit(int chars) {
+		sizeLimit = chars;
+	}
+
+	/**
+	 * drops lines at the top until the document retains about the given number
+	 * of bytes less, but keeps MIN_GOVERNED_DOCUMENT_SIZE. A paged document
+	 * reaches them again by paging up.
+	 * @return the number of bytes released
+	 */
+	long shrink(long bytes) {
+		long before = getRetainedSize();
+		int minLength = (int)(ILogViewerConstants.MIN_GOVERNED_DOCUMENT_SIZE / 2);
+		int limit = (int)Math.max(minLength, getLength() + lockedChars - bytes / 2);
+		if(sizeLimit > 0 && sizeLimit <= limit) {
+			// shrunk already
+			return 0;
+		}
+		sizeLimit = limit;
+		try {
+			trimTop();
+		} catch(BadLocationException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+		}
+		trimHeld();
+		((LogTextStore)getStore()).trimToSize();
+		((LogLineTracker)getTracker()).trimToSize();
+		return Math.max(0, before - getRetainedSize());
+	}
+
+	/**
+	 * applies the updates queued before the call, chunks following each other
+	 * are appended at once. The updates queued meanwhile are left to the next
+	 * frame. Called by the UpdateDispatcher on the UI thread.
+	 */
+	void applyPendingUpdates() {
+		updateScheduled.set(false);
+		int count = pendingUpdates.get();
+		if(scrollLocked) {
+			PendingUpdate update;
+			int held = 0;
+			while(held < count && (update = updates.poll()) != null) {
+				held++;
+				hold(update);
+			}
+			updatesRemoved(held);
+			fireBufferChanged();
+			return;
+		}
+		updatesRemoved(applyMerged(updates, count));
+	}
+
+	// Private -----------------------------------------------------------------
+
+	/**
+	 * may be called from any thread
+	 */
+	private void queueUpdate(PendingUpdate update) {
+		updates.add(update);
+		pendingUpdates.incrementAndGet();
+		UpdateDispatcher.getInstance().updateQueued(this, updateScheduled.compareAndSet(false, true));
+	}
+
+	private void updatesRemoved(int count) {
+		pendingUpdates.addAndGet(-count);
+		UpdateDispatcher.getInstance().updatesRemoved(count);
+	}
+
+	/**
+	 * drops the updates of the previous tail when the document starts over
+	 */
+	private void dropPendingUpdates() {
+		int count = 0;
+		while(updates.poll() != null) {
+			count++;
+		}
+		updatesRemoved(count);
+		if(!lockedUpdates.isEmpty()) {
+			lockedUpdates.clear();
+			lockedLines = 0;
+			lockedChars = 0;
+			fireBufferChanged();
+		}
+	}
+
+	/**
+	 * applies the updates of the queue, chunks following each other are
+	 * appended at once
+	 * @param max the number of updates to take at most
+	 * @return the number of updates taken from the queue
+	 */
+	private int applyMerged(Queue<PendingUpdate> queue, int max) {
+		int count = 0;
+		PendingUpdate merged = null;
+		PendingUpdate update;
+		while(count < max && (update = queue.poll()) != null) {
+			count++;
+			if(merged != null && merged.canAppend(update)) {
+				merged.append(update);
+				continue;
+			}
+			if(merged != null) {
+				apply(merged);
+			}
+			merged = update;
+		}
+		if(merged != null) {
+			apply(merged);
+		}
+		return count;
+	}
+
+	private void apply(PendingUpdate update) {
+		if(update.isHead) {
+			insertHead(update.getText(), update.start, update.end);
+			return;
+		}
+		if(history != null && !update.isSpilled) {
+			spill(update);
+		}
+		pendingStart = update.start;
+		pendingEnd = update.end;
+		if(!updateWindow()) {
+			// the document shows an older part of the file, keep it as it is
+			return;
+		}
+		try {
+			append(update.getText(), update.isFirstTimeRead);
+		} catch(BadLocationException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+		}
+	}
+
+	/**
+	 * keeps the update aside while the scroll lock is set. The oldest updates
+	 * are dropped as soon as the newer ones fill the backlog on their own,
+	 * they would be trimmed right after the lock is released anyway. A paged
+	 * document reaches the dropped part by paging up.
+	 */
+	private void hold(PendingUpdate update) {
+		if(history != null && !update.isHead) {
+			// the history keeps everything, its positions follow the arrival
+			spill(update);
+		}
+		lockedUpdates.add(update);
+		lockedLines += update.lines;
+		lockedChars += update.length();
+		trimHeld();
+	}
+
+	private void trimHeld() {
+		int maxLength = getMaxLength();
+		while(lockedUpdates.size() > 1) {
+			PendingUpdate oldest = lockedUpdates.peek();
+			if(lockedLines - oldest.lines < backlogLines && (maxLength == 0 || lockedChars - oldest.length() < maxLength)) {
+				break;
+			}
+			lockedUpdates.poll();
+			lockedLines -= oldest.lines;
+			lockedChars -= oldest.length();
+		}
+	}
+
+	/**
+	 * @return the maximum length of the text, 0 if only the lines are limited
+	 */
+	private int getMaxLength() {
+		if(backlogSize > 0 && sizeLimit > 0) {
+			return Math.min(backlogSize, sizeLimit);
+		}
+		return Math.max(backlogSize, sizeLimit);
+	}
+
+	private void fireBufferChanged() {
+		for(IScrollLockListener listener : new ArrayList<IScrollLockListener>(scrollLockListeners)) {
+			listener.bufferChanged(this, lockedLines);
+		}
+	}
+
+	/**
+	 * inserts the lines in front of the first read
+	 */
+	private void insertHead(String text, long start, long end) {
+		int offset = headOffset;
+		if(isPaged()) {
+			if(detached || windowStart != end) {
+				// the window was moved meanwhile, paging reaches these lines
+				return;
+			}
+			offset = headerLength;
+		}
+		if(offset < 0) {
+			return;
 		}
-		int overflow = numberOfLines - backlogLines;
 		try {
-			return getTracker().getLineOffset(overflow);
-		} catch(BadLocationException ble) {
+			replace(offset, 0, text);
+			if(isPaged()) {
+				windowStart = start;
+			}
+		} catch(BadLocationException e) {
+			LogViewerPlugin.getDefault().getLogger().logError(e);
+		}
+	}
+
+	/**
+	 * appends the text to the spill file, it gets its position there like the
+	 * content of a file. If that fails the document is not paged anymore.
+	 */
+	private void spill(PendingUpdate update) {
+		update.isSpilled = true;
+		try {
+			update.start = history.getLength();
+			history.append(update.getText());
+			update.end = history.getLength();
+		} catch(IOException e) {
+			update.start = -1;
+			LogViewerPlugin.getDefault().getLogger().logError("unable to spill the history of " + file.getPath(), e); //$NON-NLS-1$
+			releaseHistory();
+			pageSource = null;
+			windowStart = -1;
+			detached = false;
+		}
+	}
+
+	private IPageSource createPageSource() {
+		releaseHistory();
+		IPreferenceStore store = LogViewerPlugin.getDefault().getPreferenceStore();
+		boolean spill = store.getBoolean(ILogViewerConstants.PREF_SPILL_HISTORY);
+		IPageSource source = null;
+		if(spill || store.getBoolean(ILogViewerConstants.PREF_PAGED_FILES)) {
+			// files and archives are paged from their own content
+			source = reader.getPageSource();
+		}
+		// file tails insert the lines in front of the first read later on, which
+		// can't be placed in the spill file
+		if(source == null && spill && reader.getFileTail() == null) {
+			if(store.getBoolean(ILogViewerConstants.PREF_COMPRESS_HISTORY)) {
+				history = new CompressedBlockStore(SpillFile.CHARSET, ILogViewerConstants.HISTORY_BLOCK_SIZE, true);
+			} else {
+				history = new SpillFile();
+			}
+			source = history;
+		}
+		return source;
+	}
+
+	private void releaseHistory() {
+		if(history != null) {
+			history.close();
+			history = null;
+		}
+	}
+
+	private void resetWindow() {
+		windowStart = -1;
+		windowEnd = 0;
+		tailEnd = 0;
+		pendingStart = -1;
+		pendingEnd = 0;
+		headerLength = 0;
+		detached = false;
+		headOffset = -1;
+	}
+
+	/**
+	 * takes over the file position of the content the tail is about to append
+	 * @return false if the content must not be appended because the document
+	 * is detached
+	 */
+	private boolean updateWindow() {
+		long start = pendingStart;
+		pendingStart = -1;
+		if(pageSource == null) {
+			return true;
+		}
+		if(start < 0) {
+			// a message, e.g. about a truncated or replaced file. The file
+			// positions do not continue behind it.
+			windowStart = -1;
+			detached = false;
+			return true;
+		}
+		boolean continued = start == tailEnd;
+		boolean skipped = windowStart >= 0 && start > tailEnd;
+		tailEnd = pendingEnd;
+		if(detached && (continued || skipped)) {
+			return false;
+		}
+		if(skipped) {
+			// the source left out a part, e.g. of a fast inflating archive. The
+			// window restarts behind the gap, the gap is reached by paging up.
+			set(""); //$NON-NLS-1$
+			windowStart = start;
+			headerLength = 0;
+		} else if(windowStart < 0 || !continued) {
+			// everything in front of the new window can not be paged anymore
+			windowStart = start;
+			headerLength = getStore().getLength();
+			detached = false;
+		}
+		windowEnd = pendingEnd;
+		return true;
+	}
+
+	/**
+	 * moves the start of the window behind the text removed from the top
+	 */
+	private void headTrimmed(String removed) {
+		int headerPart = Math.min(headerLength, removed.length());
+		headerLength -= headerPart;
+		if(removed.length() > headerPart) {
+			windowStart += encodedLength(removed.substring(headerPart));
+		}
+	}
+
+	/**
+	 * moves the insert position of the head by the number of chars removed from
+	 * the top
+	 */
+	private void moveHeadOffset(int removed) {
+		if(headOffset >= 0) {
+			headOffset = headOffset >= removed ? headOffset - removed : -1;
+		}
+	}
+
+	/**
+	 * appends the text at the end and drops the lines exceeding the backlog at
+	 * the top. Only these two ranges are replaced in the store and the line
+	 * tracker, so the cost depends on the size of the text and not on the size
+	 * of the backlog.
+	 */
+	private void append(String text, boolean isFirstTimeRead) throws BadLocationException {
+		int start = getLength();
+		if(text.length() > 0) {
+			replace(start, 0, text);
+		}
+		int length = getLength();
+		trimTop();
+		start -= length - getLength();
+		if(isFirstTimeRead) {
+			// the lines in front of the first read are inserted here
+			headOffset = Math.max(-1, start);
+		}
+	}
+
+	private int trimTop() throws BadLocationException {
+		int numberOfLines = getNumberOfLines();
+		int overflow = Math.max(0, numberOfLines - backlogLines);
+		int maxLength = getMaxLength();
+		if(maxLength > 0 && getLength() > maxLength) {
+			// drop the lines up to the first one which starts within the limit
+			int cut = getLength() - maxLength;
+			int line = getLineOfOffset(cut);
+			if(getLineOffset(line) < cut) {
+				line++;
+			}
+			overflow = Math.max(overflow, Math.min(line, numberOfLines - 1));
+		}
+		if(overflow == 0) {
 			return 0;
 		}
+		int offset = getLineOffset(overflow);
+		if(isPaged()) {
+			headTrimmed(get(0, offset));
+		}
+		moveHeadOffset(offset);
+		trimming = true;
+		try {
+			replace(0, offset, ""); //$NON-NLS-1$
+		} finally {
+			trimming = false;
+		}
+		return overflow;
+	}
+
+	private void trimBottom() throws BadLocationException {
+		int offset = getLength();
+		if(getNumberOfLines() > backlogLines) {
+			offset = getLineOffset(backlogLines);
+		}
+		int maxLength = getMaxLength();
+		if(maxLength > 0 && offset > maxLength && getNumberOfLines() > 1) {
+			// keep the lines which end within the limit, at least the first one
+			offset = getLineOffset(Math.max(1, getLineOfOffset(maxLength)));
+		}
+		if(offset >= getLength()) {
+			return;
+		}
+		String removed = get(offset, getLength() - offset);
+		replace(offset, removed.length(), ""); //$NON-NLS-1$
+		windowEnd -= encodedLength(removed);
+		detached = true;
+	}
+
+	/**
+	 * @return the number of bytes the text was read from, exact as long as the
+	 * file content was valid in the document's charset
+	 */
+	private long encodedLength(String text) {
+		return (history != null ? history.getCharset() : charset).encode(text).remaining();
 	}
 
 	// Inner classes ----------------------------------------------------------------
 
+	/**
+	 * text of the tail waiting for the next frame of the UpdateDispatcher
+	 */
+	private static class PendingUpdate {
+
+		private char[] content;
+		private StringBuilder merged;
+		// the blocks of the head in the order they were loaded, i.e. backwards
+		private List<char[]> blocks;
+		private String text;
+		private int lines;
+		private int length;
+		private boolean isFirstTimeRead;
+		private boolean isHead;
+		private boolean isSpilled;
+		private long start;
+		private long end;
+
+		private PendingUpdate(char[] content, boolean isFirstTimeRead, boolean isHead, long start, long end) {
+			this.content = content;
+			this.isFirstTimeRead = isFirstTimeRead;
+			this.isHead = isHead;
+			this.start = start;
+			this.end = end;
+			length = content.length;
+			// counted on the thread of the tail, the scroll lock only adds them up
+			for(int i = 0; i < content.length; i++) {
+				if(content[i] == '\n') {
+					lines++;
+				}
+			}
+		}
+
+		/**
+		 * @return true if the update continues this one, messages only continue
+		 * messages and file content only the content in front of it. The head is
+		 * loaded backwards, a block of the head continues the one behind it.
+		 */
+		private boolean canAppend(PendingUpdate update) {
+			if(isHead || update.isHead) {
+				return isHead && update.isHead && update.end == start;
+			}
+			if(update.isFirstTimeRead) {
+				return false;
+			}
+			return start < 0 ? update.start < 0 : update.start == end;
+		}
+
+		private void append(PendingUpdate update) {
+			if(isHead) {
+				if(blocks == null) {
+					blocks = new ArrayList<char[]>();
+					blocks.add(content);
+				}
+				blocks.add(update.content);
+				lines += update.lines;
+				length += update.content.length;
+				start = update.start;
+				text = null;
+				return;
+			}
+			if(merged == null) {
+				merged = new StringBuilder(content.length + update.content.length).append(content);
+			}
+			merged.append(update.content);
+			lines += update.lines;
+			end = update.end;
+			text = null;
+		}
+
+		private int length() {
+			return merged != null ? merged.length() : length;
+		}
+
+		private String getText() {
+			if(text == null && blocks != null) {
+				StringBuilder builder = new StringBuilder(length);
+				for(int i = blocks.size() - 1; i >= 0; i--) {
+					builder.append(blocks.get(i));
+				}
+				text = builder.toString();
+			} else if(text == null) {
+				text = merged != null ? merged.toString() : new String(content);
+			}
+			return text;
+		}
+	}
+
 	private class PropertyChangeListener implements IPropertyChangeListener {
 
 			/* (non-Javadoc)
@@ -262,6 +1036,8 @@ public class LogDocument extends AbstractDocument implements IFileChangedListene
 		public void propertyChange(PropertyChangeEvent event) {
 			if(event.getProperty().equals(ILogViewerConstants.PREF_BACKLOG)) {
 				backlogLines = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_BACKLOG);
+			} else if(event.getProperty().equals(ILogViewerConstants.PREF_BACKLOG_SIZE)) {
+				backlogSize = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_BACKLOG_SIZE) * 1024;
 			}
 		}
 	}
@@ -0,0 +1,529 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file.document;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.ILineTracker;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextUtilities;
+
+/**
+ * Line tracker to go with the LogTextStore. The line starts are kept in a
+ * circular int array, relative to a base offset which moves with the text
+ * trimmed at the start. Trimming lines only moves the head and the base,
+ * appending adds the starts of the new lines. Offsets are compared by their
+ * difference to the base, so the int values may wrap around.
+ *
+ * Complete lines inserted at the start of a line, e.g. the lines in front of
+ * the first read or a page, move the head and the base back, only the lines
+ * in front of them are moved. Other changes are rare, the lines are computed
+ * again from the text store then. Recognizes the same delimiters as the
+ * DefaultLineTracker.
+ *
+ * The lines are numbered in segments. The lines inserted in front of a line
+ * get numbers which were never used, so the lines behind them keep theirs.
+ */
+public class LogLineTracker implements ILineTracker {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int MAX_SEGMENTS = 16;
+
+	private static final byte NONE = 0;
+	private static final byte LF = 1;
+	private static final byte CR = 2;
+	private static final byte CRLF = 3;
+
+	private static final String[] DELIMITER_TEXT = {null, "\n", "\r", "\r\n"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	// Attribute ---------------------------------------------------------------
+
+	private ITextStore store;
+
+	// capacity is a power of two, line i is at (head + i) & mask
+	private int[] starts;
+	private byte[] delimiters;
+	private int mask;
+	private int head;
+	// there is always at least one line, the last one has no delimiter
+	private int count;
+	private int base;
+	private int textLength;
+	// line i of the segment starting at segmentLines[s] gets the number
+	// segmentBases[s] + i, a line keeps its number until it is trimmed
+	private int[] segmentLines = new int[MAX_SEGMENTS];
+	private long[] segmentBases = new long[MAX_SEGMENTS];
+	private int segments;
+	// the numbers below have never been used
+	private long lowestSequence;
+
+	// Constructor -------------------------------------------------------------
+
+	/**
+	 * @param store the store of the document, it is changed before the tracker
+	 */
+	public LogLineTracker(ITextStore store) {
+		this.store = store;
+		set(""); //$NON-NLS-1$
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLegalLineDelimiters()
+	 */
+	public String[] getLegalLineDelimiters() {
+		return TextUtilities.copy(TextUtilities.DELIMITERS);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineDelimiter(int)
+	 */
+	public String getLineDelimiter(int line) throws BadLocationException {
+		checkLine(line);
+		return DELIMITER_TEXT[delimiters[(head + line) & mask]];
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#computeNumberOfLines(java.lang.String)
+	 */
+	public int computeNumberOfLines(String text) {
+		int lines = 0;
+		int length = text.length();
+		for(int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if(c == '\n') {
+				lines++;
+			} else if(c == '\r') {
+				lines++;
+				if(i + 1 < length && text.charAt(i + 1) == '\n') {
+					i++;
+				}
+			}
+		}
+		return lines;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getNumberOfLines()
+	 */
+	public int getNumberOfLines() {
+		return count;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getNumberOfLines(int, int)
+	 */
+	public int getNumberOfLines(int offset, int length) throws BadLocationException {
+		if(offset < 0 || length < 0 || offset + length > textLength) {
+			throw new BadLocationException();
+		}
+		if(length == 0) {
+			return 1;
+		}
+		return findLine(offset + length) - findLine(offset) + 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineOffset(int)
+	 */
+	public int getLineOffset(int line) throws BadLocationException {
+		checkLine(line);
+		return offsetOf(line);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineLength(int)
+	 */
+	public int getLineLength(int line) throws BadLocationException {
+		checkLine(line);
+		return endOf(line) - offsetOf(line);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineNumberOfOffset(int)
+	 */
+	public int getLineNumberOfOffset(int offset) throws BadLocationException {
+		if(offset < 0 || offset > textLength) {
+			throw new BadLocationException();
+		}
+		return findLine(offset);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineInformationOfOffset(int)
+	 */
+	public IRegion getLineInformationOfOffset(int offset) throws BadLocationException {
+		return getLineInformation(getLineNumberOfOffset(offset));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineInformation(int)
+	 */
+	public IRegion getLineInformation(int line) throws BadLocationException {
+		checkLine(line);
+		int offset = offsetOf(line);
+		int length = endOf(line) - offset - delimiterLength(delimiters[(head + line) & mask]);
+		return new Region(offset, length);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#replace(int, int, java.lang.String)
+	 */
+	public void replace(int offset, int length, String text) throws BadLocationException {
+		if(offset < 0 || length < 0 || offset + length > textLength) {
+			throw new BadLocationException();
+		}
+		boolean hasText = text != null && text.length() > 0;
+		if(offset == 0 && !hasText && length < textLength && trim(length)) {
+			return;
+		}
+		if(offset == textLength && length == 0) {
+			append(text);
+			return;
+		}
+		if(length == 0 && hasText && insert(offset, text)) {
+			return;
+		}
+		// the store was changed already
+		set(store.get(0, store.getLength()));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ILineTracker#set(java.lang.String)
+	 */
+	public void set(String text) {
+		// the numbers of the old lines are not used again
+		long next = segments > 0 ? segmentBases[segments - 1] + count : lowestSequence;
+		segmentLines[0] = 0;
+		segmentBases[0] = next;
+		segments = 1;
+		int lines = text == null ? 0 : computeNumberOfLines(text);
+		int capacity = INITIAL_CAPACITY;
+		while(capacity < lines + 1) {
+			capacity <<= 1;
+		}
+		starts = new int[capacity];
+		delimiters = new byte[capacity];
+		mask = capacity - 1;
+		head = 0;
+		count = 1;
+		base = 0;
+		textLength = 0;
+		append(text);
+	}
+
+	/**
+	 * @return a number which identifies the line as long as it is part of the
+	 * text. Only the last line may change while it keeps its number, once it
+	 * is completed by a delimiter it stays the same. Lines computed again get
+	 * new numbers.
+	 */
+	public long getLineSequence(int line) {
+		return segmentBases[findSegment(line)] + line;
+	}
+
+	/**
+	 * @return the line which has the number, -1 if it is not part of the text
+	 * any more. The numbers of the lines are not consecutive after lines were
+	 * inserted in front of others, each segment is looked up.
+	 */
+	public int getLineOfSequence(long sequence) {
+		for(int s = 0; s < segments; s++) {
+			long line = sequence - segmentBases[s];
+			int end = s + 1 < segments ? segmentLines[s + 1] : count;
+			if(line >= segmentLines[s] && line < end) {
+				return (int)line;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the bytes of the line table
+	 */
+	public long getRetainedSize() {
+		return 5L * starts.length;
+	}
+
+	/**
+	 * releases the part of the line table which is not needed for the current
+	 * lines
+	 */
+	public void trimToSize() {
+		int capacity = INITIAL_CAPACITY;
+		while(capacity < count) {
+			capacity <<= 1;
+		}
+		if(capacity < starts.length) {
+			resize(capacity);
+		}
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private void checkLine(int line) throws BadLocationException {
+		if(line < 0 || line >= count) {
+			throw new BadLocationException();
+		}
+	}
+
+	private int offsetOf(int line) {
+		return starts[(head + line) & mask] - base;
+	}
+
+	private int endOf(int line) {
+		return line + 1 < count ? offsetOf(line + 1) : textLength;
+	}
+
+	private static int delimiterLength(byte delimiter) {
+		return delimiter == CRLF ? 2 : delimiter == NONE ? 0 : 1;
+	}
+
+	/**
+	 * @return the last line starting at or in front of the offset
+	 */
+	private int findLine(int offset) {
+		int low = 0;
+		int high = count - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(offsetOf(middle) <= offset) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * drops the lines in front of the offset, the line containing it becomes
+	 * the first one
+	 * @return false if the offset splits a \r\n delimiter
+	 */
+	private boolean trim(int length) {
+		int line = findLine(length);
+		int index = (head + line) & mask;
+		if(delimiters[index] == CRLF && length == endOf(line) - 1) {
+			return false;
+		}
+		head = index;
+		count -= line;
+		trimSegments(line);
+		base += length;
+		starts[index] = base;
+		textLength -= length;
+		return true;
+	}
+
+	/**
+	 * inserts the lines of the text in front of the line starting at the
+	 * offset. The lines in front keep their offsets and the lines behind keep
+	 * their numbers.
+	 * @return false if the text does not consist of complete lines or the
+	 * offset is not the start of a line
+	 */
+	private boolean insert(int offset, String text) {
+		int line = findLine(offset);
+		int length = text.length();
+		char last = text.charAt(length - 1);
+		if(offsetOf(line) != offset) {
+			return false;
+		}
+		// the store was changed already, the line starts behind the text now
+		if(last != '\n' && (last != '\r' || store.get(offset + length) == '\n')) {
+			return false;
+		}
+		if(line > 0 && delimiters[(head + line - 1) & mask] == CR && text.charAt(0) == '\n') {
+			return false;
+		}
+		int lines = computeNumberOfLines(text);
+		if(!insertSegment(line, lines)) {
+			return false;
+		}
+		while(count + lines > starts.length) {
+			grow();
+		}
+		int newHead = (head - lines) & mask;
+		base -= length;
+		for(int i = 0; i < line; i++) {
+			int from = (head + i) & mask;
+			int to = (newHead + i) & mask;
+			starts[to] = starts[from] - length;
+			delimiters[to] = delimiters[from];
+		}
+		head = newHead;
+		int position = base + offset;
+		int index = line;
+		starts[(head + index) & mask] = position;
+		for(int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			byte delimiter;
+			if(c == '\n') {
+				delimiter = LF;
+			} else if(c == '\r') {
+				if(i + 1 < length && text.charAt(i + 1) == '\n') {
+					i++;
+					delimiter = CRLF;
+				} else {
+					delimiter = CR;
+				}
+			} else {
+				continue;
+			}
+			delimiters[(head + index) & mask] = delimiter;
+			index++;
+			// the start of the next inserted line or of the line at the offset
+			starts[(head + index) & mask] = position + i + 1;
+		}
+		count += lines;
+		textLength += length;
+		return true;
+	}
+
+	/**
+	 * @return the segment the line belongs to
+	 */
+	private int findSegment(int line) {
+		int segment = segments - 1;
+		while(segmentLines[segment] > line) {
+			segment--;
+		}
+		return segment;
+	}
+
+	private void trimSegments(int lines) {
+		int first = findSegment(lines);
+		for(int s = first; s < segments; s++) {
+			segmentLines[s - first] = Math.max(0, segmentLines[s] - lines);
+			segmentBases[s - first] = segmentBases[s] + lines;
+		}
+		segments -= first;
+	}
+
+	/**
+	 * numbers the lines inserted in front of the line with numbers which were
+	 * never used, the lines behind them keep their numbers. Lines inserted in
+	 * front of the last lines inserted continue their numbers downwards.
+	 * @return false if that needs more segments than there are
+	 */
+	private boolean insertSegment(int line, int lines) {
+		int segment = findSegment(line);
+		long lowest = lowestSequence - lines;
+		if(segmentLines[segment] == line && segmentBases[segment] + line == lowestSequence) {
+			moveSegments(segment, 0, lines);
+			segmentLines[segment] = line;
+		} else if(segmentLines[segment] == line) {
+			if(segments == MAX_SEGMENTS) {
+				return false;
+			}
+			moveSegments(segment, 1, lines);
+			segmentLines[segment] = line;
+			segmentBases[segment] = lowest - line;
+		} else {
+			// the line is in the middle of the segment, the rest gets one of its own
+			if(segments + 2 > MAX_SEGMENTS) {
+				return false;
+			}
+			moveSegments(segment + 1, 2, lines);
+			segmentLines[segment + 1] = line;
+			segmentBases[segment + 1] = lowest - line;
+			segmentLines[segment + 2] = line + lines;
+			segmentBases[segment + 2] = segmentBases[segment] - lines;
+		}
+		lowestSequence = lowest;
+		return true;
+	}
+
+	/**
+	 * moves the segments starting at the given one behind the lines inserted
+	 * in front of them and shifts them by the given number of slots
+	 */
+	private void moveSegments(int first, int shift, int lines) {
+		for(int s = segments - 1; s >= first; s--) {
+			segmentLines[s + shift] = segmentLines[s] + lines;
+			segmentBases[s + shift] = segmentBases[s] - lines;
+		}
+		segments += shift;
+	}
+
+	/**
+	 * adds the lines of the text at the end
+	 */
+	private void append(String text) {
+		if(text == null || text.length() == 0) {
+			return;
+		}
+		int length = text.length();
+		int i = 0;
+		int last = (head + count - 1) & mask;
+		if(text.charAt(0) == '\n' && count > 1 && starts[last] - base == textLength
+				&& delimiters[(head + count - 2) & mask] == CR) {
+			// the text completes the \r at the end to a \r\n
+			delimiters[(head + count - 2) & mask] = CRLF;
+			starts[last]++;
+			i = 1;
+		}
+		int position = base + textLength;
+		for(; i < length; i++) {
+			char c = text.charAt(i);
+			if(c == '\n') {
+				addLine(LF, position + i + 1);
+			} else if(c == '\r') {
+				if(i + 1 < length && text.charAt(i + 1) == '\n') {
+					i++;
+					addLine(CRLF, position + i + 1);
+				} else {
+					addLine(CR, position + i + 1);
+				}
+			}
+		}
+		textLength += length;
+	}
+
+	/**
+	 * ends the last line with the delimiter and starts a new one behind it
+	 */
+	private void addLine(byte delimiter, int start) {
+		if(count == starts.length) {
+			grow();
+		}
+		delimiters[(head + count - 1) & mask] = delimiter;
+		int index = (head + count) & mask;
+		starts[index] = start;
+		delimiters[index] = NONE;
+		count++;
+	}
+
+	private void grow() {
+		resize(starts.length * 2);
+	}
+
+	private void resize(int capacity) {
+		int[] newStarts = new int[capacity];
+		byte[] newDelimiters = new byte[capacity];
+		for(int i = 0; i < count; i++) {
+			newStarts[i] = starts[(head + i) & mask];
+			newDelimiters[i] = delimiters[(head + i) & mask];
+		}
+		starts = newStarts;
+		delimiters = newDelimiters;
+		mask = newStarts.length - 1;
+		head = 0;
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file.document;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Immutable view of the text of a log document at one point in time. It
+ * shares the buffer of the LogTextStore, the store copies its text before it
+ * would overwrite a part a snapshot reads. So a snapshot can be scanned by any
+ * thread, e.g. a search or an export job, while the tail keeps appending.
+ * The snapshot pins the part of the buffer it reads until it is closed, an
+ * open snapshot makes the store copy its text on the next appends.
+ */
+public class LogSnapshot implements CharSequence, AutoCloseable {
+
+	// Attribute ---------------------------------------------------------------
+
+	// null for a part of a snapshot, it is released with the snapshot
+	private final LogTextStore.Buffer buffer;
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private final char[] chars;
+	private final int mask;
+	private final long start;
+	private final int length;
+	private final long version;
+
+	// Constructor -------------------------------------------------------------
+
+	LogSnapshot(LogTextStore.Buffer buffer, char[] chars, long start, int length, long version) {
+		this.buffer = buffer;
+		this.chars = chars;
+		this.mask = chars.length - 1;
+		this.start = start;
+		this.length = length;
+		this.version = version;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @return a number which grows with every change of the document, snapshots
+	 * with the same version have the same text
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length() {
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index) {
+		if(index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+		return chars[(int)(start + index) & mask];
+	}
+
+	/**
+	 * @return the part of the snapshot, without copying the text
+	 */
+	public LogSnapshot subSequence(int begin, int end) {
+		if(begin < 0 || end > length || begin > end) {
+			throw new IndexOutOfBoundsException(begin + "-" + end); //$NON-NLS-1$
+		}
+		return new LogSnapshot(null, chars, start + begin, end - begin, version);
+	}
+
+	/**
+	 * copies the chars [begin, end) to the target like String.getChars()
+	 */
+	public void getChars(int begin, int end, char[] target, int targetOffset) {
+		if(begin < 0 || end > length || begin > end) {
+			throw new IndexOutOfBoundsException(begin + "-" + end); //$NON-NLS-1$
+		}
+		int count = end - begin;
+		int first = (int)(start + begin) & mask;
+		int part = Math.min(count, chars.length - first);
+		System.arraycopy(chars, first, target, targetOffset, part);
+		if(part < count) {
+			System.arraycopy(chars, 0, target, targetOffset + part, count - part);
+		}
+	}
+
+	/**
+	 * @return the offset of the next line after the offset, length() if there
+	 * is none. Recognizes \n, \r and \r\n like the document.
+	 */
+	public int nextLine(int offset) {
+		for(int i = offset; i < length; i++) {
+			char c = chars[(int)(start + i) & mask];
+			if(c == '\n') {
+				return i + 1;
+			}
+			if(c == '\r') {
+				return i + 1 < length && charAt(i + 1) == '\n' ? i + 2 : i + 1;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * releases the text to the store, the snapshot and its parts must not be
+	 * read afterwards. Closing it again does nothing.
+	 */
+	public void close() {
+		if(buffer != null && closed.compareAndSet(false, true)) {
+			buffer.unpin(start);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		char[] text = new char[length];
+		getChars(0, length, text, 0);
+		return new String(text);
+	}
+}
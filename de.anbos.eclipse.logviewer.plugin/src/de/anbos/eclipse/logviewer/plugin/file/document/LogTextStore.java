@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file.document;
+
+import java.util.TreeMap;
+
+import org.eclipse.jface.text.ITextStore;
+
+/**
+ * Text store for a log document which is appended at the end and trimmed at
+ * the start. The text is kept in a circular char buffer: removing text at the
+ * start only moves the head, appending copies the new text only. The buffer
+ * grows until it holds the backlog and is reused from then on. Inserting near
+ * the start, e.g. the lines in front of the first read or a page, moves the
+ * start back into the free part of the buffer. Any other replace copies the
+ * whole text into a new buffer.
+ *
+ * Positions in a buffer are counted from its first write on, the slot of a
+ * position is position & mask. Appending reuses the slots of positions which
+ * were trimmed. snapshot() shares the buffer with the snapshot and pins the
+ * positions it reads until the snapshot is closed, an append which would reuse
+ * a pinned slot copies the text into a new buffer first and leaves the old one
+ * to the snapshots. The store
+ * is changed by the UI thread only, snapshots can be taken from any thread.
+ * The store is a CharSequence itself, so the UI thread can match patterns
+ * against the current text without copying it.
+ */
+public class LogTextStore implements ITextStore, CharSequence {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	// Attribute ---------------------------------------------------------------
+
+	// capacity is a power of two, so positions wrap with the mask
+	private Buffer buffer;
+	private long start;
+	private int length;
+	private long version;
+
+	// what snapshot() reads, replaced after every change
+	private volatile State state;
+
+	// Constructor -------------------------------------------------------------
+
+	public LogTextStore() {
+		allocate(0);
+		publish();
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ITextStore#get(int)
+	 */
+	public char get(int offset) {
+		return buffer.chars[(int)(start + offset) & buffer.mask];
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ITextStore#get(int, int)
+	 */
+	public String get(int offset, int length) {
+		int first = (int)(start + offset) & buffer.mask;
+		if(first + length <= buffer.chars.length) {
+			return new String(buffer.chars, first, length);
+		}
+		char[] chars = new char[length];
+		copyTo(offset, length, chars, 0);
+		return new String(chars);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ITextStore#getLength()
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ITextStore#replace(int, int, java.lang.String)
+	 */
+	public void replace(int offset, int length, String text) {
+		int textLength = text == null ? 0 : text.length();
+		if(offset == 0 && textLength == 0) {
+			// trimmed at the start
+			start += length;
+			this.length -= length;
+			publish();
+			return;
+		}
+		if(offset == this.length && length == 0) {
+			// appended at the end
+			if(this.length + textLength > buffer.chars.length) {
+				copy(this.length + textLength);
+			} else {
+				reserve(textLength);
+			}
+			write(this.length, text);
+			this.length += textLength;
+			publish();
+			return;
+		}
+		if(length == 0 && textLength > 0 && offset <= this.length / 2 && insertAtStart(offset, text)) {
+			return;
+		}
+		int newLength = this.length - length + textLength;
+		Buffer newBuffer = new Buffer(capacityFor(Math.max(newLength, buffer.chars.length)));
+		copyTo(0, offset, newBuffer.chars, 0);
+		if(textLength > 0) {
+			text.getChars(0, textLength, newBuffer.chars, offset);
+		}
+		copyTo(offset + length, this.length - offset - length, newBuffer.chars, offset + textLength);
+		buffer = newBuffer;
+		start = 0;
+		this.length = newLength;
+		publish();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.text.ITextStore#set(java.lang.String)
+	 */
+	public void set(String text) {
+		int textLength = text == null ? 0 : text.length();
+		// a new text starts small again, the old backlog may have been much longer
+		allocate(textLength);
+		write(0, text);
+		length = textLength;
+		publish();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index) {
+		if(index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+		return buffer.chars[(int)(start + index) & buffer.mask];
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return a copy of the part of the text
+	 */
+	public CharSequence subSequence(int begin, int end) {
+		if(begin < 0 || end > length || begin > end) {
+			throw new IndexOutOfBoundsException(begin + "-" + end); //$NON-NLS-1$
+		}
+		return get(begin, end - begin);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return get(0, length);
+	}
+
+	/**
+	 * takes a snapshot of the text without copying it, may be called from any
+	 * thread. The snapshot must be closed once it is read.
+	 */
+	public LogSnapshot snapshot() {
+		while(true) {
+			State current = state;
+			Buffer shared = current.buffer;
+			shared.pin(current.start);
+			if(shared.reused <= current.start && state == current) {
+				return new LogSnapshot(shared, shared.chars, current.start, current.length, current.version);
+			}
+			// an append or insert reused slots of this state meanwhile, a newer one
+			// is published
+			shared.unpin(current.start);
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the bytes of the buffer
+	 */
+	public long getRetainedSize() {
+		return 2L * buffer.chars.length;
+	}
+
+	/**
+	 * releases the part of the buffer which is not needed for the current text,
+	 * e.g. after the backlog was reduced
+	 */
+	public void trimToSize() {
+		if(capacityFor(length) < buffer.chars.length) {
+			copy(length);
+			publish();
+		}
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private void allocate(int minCapacity) {
+		buffer = new Buffer(capacityFor(minCapacity));
+		start = 0;
+		length = 0;
+	}
+
+	private static int capacityFor(int minCapacity) {
+		int capacity = INITIAL_CAPACITY;
+		while(capacity < minCapacity) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * moves the text into a new buffer which holds at least minCapacity chars
+	 */
+	private void copy(int minCapacity) {
+		Buffer newBuffer = new Buffer(capacityFor(minCapacity));
+		copyTo(0, length, newBuffer.chars, 0);
+		buffer = newBuffer;
+		start = 0;
+	}
+
+	/**
+	 * makes sure that the next count chars can be appended without changing a
+	 * snapshot. The slots of trimmed positions are announced before they are
+	 * reused, a snapshot pins its positions before it checks the announcement,
+	 * so one of both sees the other.
+	 */
+	private void reserve(int count) {
+		long reused = start + length + count - buffer.chars.length;
+		if(reused <= buffer.reused) {
+			return;
+		}
+		buffer.reused = reused;
+		if(buffer.getLowestPin() < reused) {
+			// copy on write, the old buffer stays with the snapshots
+			copy(buffer.chars.length);
+		}
+	}
+
+	/**
+	 * inserts the text at the offset by moving the chars in front of it and
+	 * the start back into the free slots in front of the text. Snapshots of
+	 * the buffer do not succeed meanwhile, see reserve().
+	 * @return false if the slots are not free or a snapshot reads the chars
+	 * which are moved
+	 */
+	private boolean insertAtStart(int offset, String text) {
+		int textLength = text.length();
+		long newStart = start - textLength;
+		long reused = buffer.reused;
+		if(length + textLength > buffer.chars.length || newStart < reused) {
+			return false;
+		}
+		buffer.reused = Long.MAX_VALUE;
+		if(buffer.getLowestPin() < start + offset) {
+			buffer.reused = reused;
+			return false;
+		}
+		for(int i = 0; i < offset; i++) {
+			buffer.chars[(int)(newStart + i) & buffer.mask] = buffer.chars[(int)(start + i) & buffer.mask];
+		}
+		start = newStart;
+		write(offset, text);
+		length += textLength;
+		publish();
+		// snapshots of the new state may succeed again
+		buffer.reused = reused;
+		return true;
+	}
+
+	private void publish() {
+		state = new State(buffer, start, length, ++version);
+	}
+
+	/**
+	 * copies the text to the given offset, it wraps around the end of the buffer
+	 */
+	private void write(int offset, String text) {
+		if(text == null || text.length() == 0) {
+			return;
+		}
+		int first = (int)(start + offset) & buffer.mask;
+		int count = Math.min(text.length(), buffer.chars.length - first);
+		text.getChars(0, count, buffer.chars, first);
+		if(count < text.length()) {
+			text.getChars(count, text.length(), buffer.chars, 0);
+		}
+	}
+
+	private void copyTo(int offset, int length, char[] target, int targetOffset) {
+		if(length <= 0) {
+			return;
+		}
+		int first = (int)(start + offset) & buffer.mask;
+		int count = Math.min(length, buffer.chars.length - first);
+		System.arraycopy(buffer.chars, first, target, targetOffset, count);
+		if(count < length) {
+			System.arraycopy(buffer.chars, 0, target, targetOffset + count, length - count);
+		}
+	}
+
+	// Inner classes ----------------------------------------------------------------
+
+	static class Buffer {
+
+		private final char[] chars;
+		private final int mask;
+		// the number of open snapshots per position they start at
+		private final TreeMap<Long,Integer> pins = new TreeMap<Long,Integer>();
+		// the positions below have been overwritten by appends
+		private volatile long reused = Long.MIN_VALUE;
+
+		private Buffer(int capacity) {
+			chars = new char[capacity];
+			mask = capacity - 1;
+		}
+
+		synchronized void pin(long position) {
+			Integer count = pins.get(position);
+			pins.put(position, count == null ? 1 : count + 1);
+		}
+
+		/**
+		 * called by a snapshot which is closed
+		 */
+		synchronized void unpin(long position) {
+			Integer count = pins.get(position);
+			if(count == null) {
+				return;
+			}
+			if(count > 1) {
+				pins.put(position, count - 1);
+			} else {
+				pins.remove(position);
+			}
+		}
+
+		/**
+		 * @return the lowest position an open snapshot reads, Long.MAX_VALUE if
+		 * there is none
+		 */
+		private synchronized long getLowestPin() {
+			return pins.isEmpty() ? Long.MAX_VALUE : pins.firstKey();
+		}
+	}
+
+	private static class State {
+
+		private final Buffer buffer;
+		private final long start;
+		private final int length;
+		private final long version;
+
+		private State(Buffer buffer, long start, int length, long version) {
+			this.buffer = buffer;
+			this.start = start;
+			this.length = length;
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file.document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+
+/**
+ * Keeps the memory of all open documents within PREF_MEMORY_BUDGET. Every
+ * document sizes its backlog on its own, so many tabs with a large backlog
+ * could fill the heap. If the documents retain more than the budget, the least
+ * recently viewed ones are shrunk first, the document viewed last only if that
+ * is not enough. A shrunk document keeps its reduced size until it is viewed
+ * again. All methods must be called from the UI thread.
+ */
+public class MemoryGovernor {
+
+	// Constant ----------------------------------------------------------------
+
+	private static MemoryGovernor instance;
+
+	// Attribute ---------------------------------------------------------------
+
+	// in the order they were viewed, the least recently viewed first
+	private LinkedHashSet<LogDocument> documents;
+	private long lastWarning;
+
+	// Constructor -------------------------------------------------------------
+
+	private MemoryGovernor() {
+		documents = new LinkedHashSet<LogDocument>();
+	}
+
+	// Static ------------------------------------------------------------------
+
+	public static synchronized MemoryGovernor getInstance() {
+		if(instance == null) {
+			instance = new MemoryGovernor();
+		}
+		return instance;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * makes the document the most recently viewed one and lifts its reduced size
+	 */
+	public void documentViewed(LogDocument document) {
+		if(!documents.remove(document)) {
+			return;
+		}
+		documents.add(document);
+		document.setSizeLimit(0);
+		check();
+	}
+
+	/**
+	 * @return the bytes retained by all open documents
+	 */
+	public long getRetainedSize() {
+		long size = 0;
+		for(LogDocument document : documents) {
+			size += document.getRetainedSize();
+		}
+		return size;
+	}
+
+	/**
+	 * shrinks the least recently viewed documents until all of them fit into
+	 * the budget again
+	 */
+	public void check() {
+		long budget = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_MEMORY_BUDGET) * 1048576L;
+		if(budget <= 0) {
+			return;
+		}
+		long excess = getRetainedSize() - budget;
+		if(excess <= 0) {
+			return;
+		}
+		for(LogDocument document : new ArrayList<LogDocument>(documents)) {
+			excess -= document.shrink(excess);
+			if(excess <= 0) {
+				return;
+			}
+		}
+		// the rest is below the minimum size of the documents or in their histories
+		long now = System.currentTimeMillis();
+		if(now - lastWarning >= ILogViewerConstants.UI_UPDATE_WARNING_INTERVAL) {
+			LogViewerPlugin.getDefault().getLogger().logWarning("the open documents exceed the memory budget by " + excess + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+			lastWarning = now;
+		}
+	}
+
+	// Package -----------------------------------------------------------------
+
+	void documentOpened(LogDocument document) {
+		documents.add(document);
+	}
+
+	void documentClosed(LogDocument document) {
+		documents.remove(document);
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.file.document;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.swt.widgets.Display;
+
+import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
+import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+
+/**
+ * Hands the updates of the tails to their documents on the UI thread. The
+ * reader threads only queue their updates, the documents with pending updates
+ * are collected and applied together at most PREF_UI_UPDATE_RATE times per
+ * second, so a burst does not flood the UI thread with one runnable per chunk.
+ * A frame applies the updates queued before it started only, a document may
+ * queue UI_UPDATE_MAX_PENDING updates before its tails wait for the view.
+ */
+public class UpdateDispatcher {
+
+	// Constant ----------------------------------------------------------------
+
+	private static UpdateDispatcher instance;
+
+	// Attribute ---------------------------------------------------------------
+
+	private ConcurrentLinkedQueue<LogDocument> documents;
+	private AtomicBoolean frameRequested;
+	private AtomicInteger queueDepth;
+	private int maxQueueDepth;
+	private long lastFrame;
+	private long lastWarning;
+	private Runnable frameStarter;
+	private Runnable frame;
+
+	// Constructor -------------------------------------------------------------
+
+	private UpdateDispatcher() {
+		documents = new ConcurrentLinkedQueue<LogDocument>();
+		frameRequested = new AtomicBoolean();
+		queueDepth = new AtomicInteger();
+		frameStarter = new FrameStarter();
+		frame = new Frame();
+	}
+
+	// Static ------------------------------------------------------------------
+
+	public static synchronized UpdateDispatcher getInstance() {
+		if(instance == null) {
+			instance = new UpdateDispatcher();
+		}
+		return instance;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @return the number of updates queued by the tails and not applied yet
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * @return the highest queue depth seen at the start of a frame
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	// Package -----------------------------------------------------------------
+
+	/**
+	 * called by a document after it queued an update, may be called from any
+	 * thread
+	 * @param isFirst true if the document had no pending updates before
+	 */
+	void updateQueued(LogDocument document, boolean isFirst) {
+		queueDepth.incrementAndGet();
+		if(isFirst) {
+			documents.add(document);
+		}
+		if(frameRequested.compareAndSet(false, true)) {
+			Display display = Display.getDefault();
+			if(display == null || display.isDisposed()) {
+				frameRequested.set(false);
+				return;
+			}
+			display.asyncExec(frameStarter);
+		}
+	}
+
+	/**
+	 * called by a document for the updates it applied or dropped
+	 */
+	void updatesRemoved(int count) {
+		queueDepth.addAndGet(-count);
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private int getFrameInterval() {
+		int rate = LogViewerPlugin.getDefault().getPreferenceStore().getInt(ILogViewerConstants.PREF_UI_UPDATE_RATE);
+		return 1000 / Math.max(1, Math.min(ILogViewerConstants.MAX_UI_UPDATE_RATE, rate));
+	}
+
+	/**
+	 * warns once in a while if the tails deliver faster than the view applies
+	 */
+	private void checkSaturation(int depth, long now) {
+		maxQueueDepth = Math.max(maxQueueDepth, depth);
+		if(depth >= ILogViewerConstants.UI_UPDATE_SATURATED_DEPTH && now - lastWarning >= ILogViewerConstants.UI_UPDATE_WARNING_INTERVAL) {
+			LogViewerPlugin.getDefault().getLogger().logWarning("the view is saturated, " + depth + " updates are queued"); //$NON-NLS-1$ //$NON-NLS-2$
+			lastWarning = now;
+		}
+	}
+
+	// Inner classes ----------------------------------------------------------------
+
+	/**
+	 * runs on the UI thread, waits for the rest of the frame interval
+	 */
+	private class FrameStarter implements Runnable {
+
+		public void run() {
+			long delay = lastFrame + getFrameInterval() - System.currentTimeMillis();
+			if(delay > 0) {
+				Display.getCurrent().timerExec((int)delay, frame);
+			} else {
+				frame.run();
+			}
+		}
+	}
+
+	/**
+	 * runs on the UI thread, applies the pending updates of the documents
+	 * queued before the frame started
+	 */
+	private class Frame implements Runnable {
+
+		public void run() {
+			// updates queued from now on request the next frame
+			frameRequested.set(false);
+			lastFrame = System.currentTimeMillis();
+			checkSaturation(queueDepth.get(), lastFrame);
+			int count = documents.size();
+			LogDocument document;
+			for(int i = 0; i < count && (document = documents.poll()) != null; i++) {
+				document.applyPendingUpdates();
+			}
+			MemoryGovernor.getInstance().check();
+		}
+	}
+}
@@ -61,6 +61,10 @@ public class HistoryFile {
 			name = "File: ";
 		} else if (type == LogFileType.LOGFILE_ECLIPSE_CONSOLE) {
 			name = "Console: ";
+		} else if (type == LogFileType.LOGFILE_MERGED) {
+			name = "Merged: ";
+		} else if (type == LogFileType.LOGFILE_STREAM) {
+			name = "Stream: ";
 		}
 		return name + getNamePattern();
 	}
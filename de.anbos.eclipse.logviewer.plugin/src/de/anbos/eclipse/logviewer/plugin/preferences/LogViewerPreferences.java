@@ -44,9 +44,16 @@ public class LogViewerPreferences extends PreferencePage implements IWorkbenchPr
 	// Attribute ---------------------------------------------------------------
 
 	private IntegerFieldEditor backlogEditor;
+	private IntegerFieldEditor backlogSizeEditor;
+	private IntegerFieldEditor memoryBudgetEditor;
 	private IntegerFieldEditor bufferEditor;
 	private IntegerFieldEditor readWaitEditor;
+	private IntegerFieldEditor updateRateEditor;
     private StringFieldEditor filterExtensionsEditor;
+    private Button watchFiles;
+    private Button pagedFiles;
+    private Button spillHistory;
+    private Button compressHistory;
 
 	private EncodingComboEditor encodingComboEditor;
 	private ColorFieldEditor colorFieldEditor;
@@ -91,8 +98,15 @@ public class LogViewerPreferences extends PreferencePage implements IWorkbenchPr
 		tailGroup.setLayoutData(data);
 
 		createBacklogField(tailGroup);
+		createBacklogSizeField(tailGroup);
+		createMemoryBudgetField(tailGroup);
 		createReadBufferField(tailGroup);
 		createReadWaitField(tailGroup);
+		createUpdateRateField(tailGroup);
+		createWatchFiles(tailGroup);
+		createPagedFiles(tailGroup);
+		createSpillHistory(tailGroup);
+		createCompressHistory(tailGroup);
 		createFilterExtensions(tailGroup);
 
 		Group viewerGroup = new Group(pageComponent,SWT.NONE);
@@ -122,8 +136,15 @@ public class LogViewerPreferences extends PreferencePage implements IWorkbenchPr
 
 	protected void performDefaults() {
 		backlogEditor.loadDefault();
+		backlogSizeEditor.loadDefault();
+		memoryBudgetEditor.loadDefault();
 		bufferEditor.loadDefault();
 		readWaitEditor.loadDefault();
+		updateRateEditor.loadDefault();
+		watchFiles.setSelection(doGetPreferenceStore().getDefaultBoolean(ILogViewerConstants.PREF_WATCH_FILES));
+		pagedFiles.setSelection(doGetPreferenceStore().getDefaultBoolean(ILogViewerConstants.PREF_PAGED_FILES));
+		spillHistory.setSelection(doGetPreferenceStore().getDefaultBoolean(ILogViewerConstants.PREF_SPILL_HISTORY));
+		compressHistory.setSelection(doGetPreferenceStore().getDefaultBoolean(ILogViewerConstants.PREF_COMPRESS_HISTORY));
 		filterExtensionsEditor.loadDefault();
 		encodingComboEditor.loadDefault();
 		colorFieldEditor.loadDefault();
@@ -141,8 +162,15 @@ public class LogViewerPreferences extends PreferencePage implements IWorkbenchPr
 
 	public boolean performOk() {
 		backlogEditor.store();
+		backlogSizeEditor.store();
+		memoryBudgetEditor.store();
 		bufferEditor.store();
 		readWaitEditor.store();
+		updateRateEditor.store();
+		doGetPreferenceStore().setValue(ILogViewerConstants.PREF_WATCH_FILES, watchFiles.getSelection());
+		doGetPreferenceStore().setValue(ILogViewerConstants.PREF_PAGED_FILES, pagedFiles.getSelection());
+		doGetPreferenceStore().setValue(ILogViewerConstants.PREF_SPILL_HISTORY, spillHistory.getSelection());
+		doGetPreferenceStore().setValue(ILogViewerConstants.PREF_COMPRESS_HISTORY, compressHistory.getSelection());
 		filterExtensionsEditor.store();
 		encodingComboEditor.store();
 		colorFieldEditor.store();
@@ -169,6 +197,30 @@ public class LogViewerPreferences extends PreferencePage implements IWorkbenchPr
 		backlogEditor.setPropertyChangeListener(validityChangeListener);
 	}
 
+	private void createBacklogSizeField(Composite composite) {
+		backlogSizeEditor = new IntegerFieldEditor(ILogViewerConstants.PREF_BACKLOG_SIZE,LogViewerPlugin.getResourceString("preferences.backlogsize.label.text"),composite); //$NON-NLS-1$
+		backlogSizeEditor.setPreferenceStore(doGetPreferenceStore());
+		backlogSizeEditor.setPage(this);
+		backlogSizeEditor.setTextLimit(Integer.toString(ILogViewerConstants.MAX_BACKLOG_SIZE).length());
+		backlogSizeEditor.setErrorMessage(LogViewerPlugin.getResourceString("preferences.backlogsize.label.errortext",new Object[]{new Integer(ILogViewerConstants.MAX_BACKLOG_SIZE)})); //$NON-NLS-1$
+		backlogSizeEditor.setValidateStrategy(StringFieldEditor.VALIDATE_ON_KEY_STROKE);
+		backlogSizeEditor.setValidRange(0,ILogViewerConstants.MAX_BACKLOG_SIZE);
+		backlogSizeEditor.load();
+		backlogSizeEditor.setPropertyChangeListener(validityChangeListener);
+	}
+
+	private void createMemoryBudgetField(Composite composite) {
+		memoryBudgetEditor = new IntegerFieldEditor(ILogViewerConstants.PREF_MEMORY_BUDGET,LogViewerPlugin.getResourceString("preferences.memorybudget.label.text"),composite); //$NON-NLS-1$
+		memoryBudgetEditor.setPreferenceStore(doGetPreferenceStore());
+		memoryBudgetEditor.setPage(this);
+		memoryBudgetEditor.setTextLimit(Integer.toString(ILogViewerConstants.MAX_MEMORY_BUDGET).length());
+		memoryBudgetEditor.setErrorMessage(LogViewerPlugin.getResourceString("preferences.memorybudget.label.errortext",new Object[]{new Integer(ILogViewerConstants.MAX_MEMORY_BUDGET)})); //$NON-NLS-1$
+		memoryBudgetEditor.setValidateStrategy(StringFieldEditor.VALIDATE_ON_KEY_STROKE);
+		memoryBudgetEditor.setValidRange(0,ILogViewerConstants.MAX_MEMORY_BUDGET);
+		memoryBudgetEditor.load();
+		memoryBudgetEditor.setPropertyChangeListener(validityChangeListener);
+	}
+
 	private void createReadBufferField(Composite composite) {
 		bufferEditor = new IntegerFieldEditor(ILogViewerConstants.PREF_BUFFER,LogViewerPlugin.getResourceString("preferences.buffer.label.text"),composite); //$NON-NLS-1$
 		bufferEditor.setPreferenceStore(doGetPreferenceStore());
@@ -193,6 +245,54 @@ public class LogViewerPreferences extends PreferencePage implements IWorkbenchPr
 		readWaitEditor.setPropertyChangeListener(validityChangeListener);
 	}
 
+	private void createUpdateRateField(Composite composite) {
+		updateRateEditor = new IntegerFieldEditor(ILogViewerConstants.PREF_UI_UPDATE_RATE,LogViewerPlugin.getResourceString("preferences.updaterate.label.text"),composite); //$NON-NLS-1$
+		updateRateEditor.setPreferenceStore(doGetPreferenceStore());
+		updateRateEditor.setPage(this);
+		updateRateEditor.setTextLimit(Integer.toString(ILogViewerConstants.MAX_UI_UPDATE_RATE).length());
+		updateRateEditor.setErrorMessage(LogViewerPlugin.getResourceString("preferences.updaterate.label.errortext",new Object[]{new Integer(ILogViewerConstants.MAX_UI_UPDATE_RATE)})); //$NON-NLS-1$
+		updateRateEditor.setValidateStrategy(StringFieldEditor.VALIDATE_ON_KEY_STROKE);
+		updateRateEditor.setValidRange(1,ILogViewerConstants.MAX_UI_UPDATE_RATE);
+		updateRateEditor.load();
+		updateRateEditor.setPropertyChangeListener(validityChangeListener);
+	}
+
+	private void createWatchFiles(Composite composite) {
+        // draw label
+        Label comboLabel = new Label(composite,SWT.LEFT);
+        comboLabel.setText(LogViewerPlugin.getResourceString("preferences.watchfiles.label.text")); //$NON-NLS-1$
+        // draw checkbox
+        watchFiles = new Button(composite,SWT.CHECK);
+        watchFiles.setSelection(doGetPreferenceStore().getBoolean(ILogViewerConstants.PREF_WATCH_FILES));
+	}
+
+	private void createPagedFiles(Composite composite) {
+        // draw label
+        Label comboLabel = new Label(composite,SWT.LEFT);
+        comboLabel.setText(LogViewerPlugin.getResourceString("preferences.pagedfiles.label.text")); //$NON-NLS-1$
+        // draw checkbox
+        pagedFiles = new Button(composite,SWT.CHECK);
+        pagedFiles.setSelection(doGetPreferenceStore().getBoolean(ILogViewerConstants.PREF_PAGED_FILES));
+	}
+
+	private void createSpillHistory(Composite composite) {
+        // draw label
+        Label comboLabel = new Label(composite,SWT.LEFT);
+        comboLabel.setText(LogViewerPlugin.getResourceString("preferences.spillhistory.label.text")); //$NON-NLS-1$
+        // draw checkbox
+        spillHistory = new Button(composite,SWT.CHECK);
+        spillHistory.setSelection(doGetPreferenceStore().getBoolean(ILogViewerConstants.PREF_SPILL_HISTORY));
+	}
+
+	private void createCompressHistory(Composite composite) {
+        // draw label
+        Label comboLabel = new Label(composite,SWT.LEFT);
+        comboLabel.setText(LogViewerPlugin.getResourceString("preferences.compresshistory.label.text")); //$NON-NLS-1$
+        // draw checkbox
+        compressHistory = new Button(composite,SWT.CHECK);
+        compressHistory.setSelection(doGetPreferenceStore().getBoolean(ILogViewerConstants.PREF_COMPRESS_HISTORY));
+	}
+
 	private void createFilterExtensions(Composite composite) {
 		filterExtensionsEditor = new StringFieldEditor(ILogViewerConstants.PREF_FILTER_EXTENSIONS,LogViewerPlugin.getResourceString("preferences.contenteditor.filterextensions.label.text"),composite); //$NON-NLS-1$
 		filterExtensionsEditor.setPreferenceStore(doGetPreferenceStore());
@@ -209,12 +309,21 @@ public class LogViewerPreferences extends PreferencePage implements IWorkbenchPr
 		if (!backlogEditor.isValid()) {
 			setErrorMessage(backlogEditor.getErrorMessage());
 			setValid(false);
+		} else if (!backlogSizeEditor.isValid()) {
+			setErrorMessage(backlogSizeEditor.getErrorMessage());
+			setValid(false);
+		} else if (!memoryBudgetEditor.isValid()) {
+			setErrorMessage(memoryBudgetEditor.getErrorMessage());
+			setValid(false);
 		} else if (!bufferEditor.isValid()) {
 			setErrorMessage(bufferEditor.getErrorMessage());
 			setValid(false);
 		} else if (!readWaitEditor.isValid()) {
 			setErrorMessage(readWaitEditor.getErrorMessage());
 			setValid(false);
+		} else if (!updateRateEditor.isValid()) {
+			setErrorMessage(updateRateEditor.getErrorMessage());
+			setValid(false);
 		} else {
 			setValid(true);
 		}
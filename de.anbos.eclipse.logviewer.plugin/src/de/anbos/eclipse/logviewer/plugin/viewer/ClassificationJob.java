@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.viewer;
+
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+import de.anbos.eclipse.logviewer.plugin.file.document.LogDocument;
+import de.anbos.eclipse.logviewer.plugin.file.document.LogSnapshot;
+import de.anbos.eclipse.logviewer.plugin.viewer.rule.RuleSet;
+
+/**
+ * Runs the coloring rules on lines of a log document which the repairer could
+ * not classify in time on the UI thread. The job reads a snapshot of the
+ * document, so the tail can keep appending meanwhile, and uses rules of its
+ * own. The snapshot is closed as soon as the request is done or replaced. The
+ * classes are handed back to the repairer in batches, which caches
+ * them and lets the viewer present the lines again. A newer request replaces
+ * the lines not classified yet, they are usually scrolled out of view.
+ */
+class ClassificationJob extends Job {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final int BATCH_SIZE = 100;
+
+	// Attribute ---------------------------------------------------------------
+
+	private DamageRepairer repairer;
+	private Display display;
+	// used by the job only
+	private TextWindow window;
+	private Request pending;
+
+	// Constructor -------------------------------------------------------------
+
+	ClassificationJob(DamageRepairer repairer, Display display) {
+		super("LogViewer Coloring"); //$NON-NLS-1$
+		this.repairer = repairer;
+		this.display = display;
+		window = new TextWindow();
+		setSystem(true);
+		setPriority(DECORATE);
+	}
+
+	// Package -----------------------------------------------------------------
+
+	/**
+	 * classifies the lines in the background, the job closes the snapshot
+	 * @param offset the offset of the first line in the snapshot
+	 * @param sequences the sequences of the lines in the document
+	 */
+	void classify(LogDocument document, LogSnapshot text, int offset, long[] sequences, RuleSet ruleSet, int generation) {
+		Request superseded;
+		synchronized(this) {
+			superseded = pending;
+			pending = new Request(document, text, offset, sequences, ruleSet, generation);
+		}
+		if(superseded != null) {
+			superseded.text.close();
+		}
+		schedule();
+	}
+
+	void dispose() {
+		Request superseded;
+		synchronized(this) {
+			superseded = pending;
+			pending = null;
+		}
+		if(superseded != null) {
+			superseded.text.close();
+		}
+		cancel();
+	}
+
+	// Protected ---------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	protected IStatus run(IProgressMonitor monitor) {
+		Request request;
+		while((request = takePending()) != null) {
+			try {
+				if(monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				process(request, monitor);
+			} finally {
+				request.text.close();
+			}
+		}
+		return Status.OK_STATUS;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private synchronized Request takePending() {
+		Request request = pending;
+		pending = null;
+		return request;
+	}
+
+	private synchronized boolean isSuperseded() {
+		return pending != null;
+	}
+
+	private void process(Request request, IProgressMonitor monitor) {
+		LogSnapshot text = request.text;
+		int offset = request.offset;
+		int first = 0;
+		int remaining = request.sequences.length;
+		while(remaining > 0 && !monitor.isCanceled() && !isSuperseded()) {
+			int[] classes = new int[Math.min(BATCH_SIZE, remaining)];
+			int count = 0;
+			while(count < classes.length) {
+				int next = text.nextLine(offset);
+				int end = getContentEnd(text, offset, next);
+				if(end == next) {
+					// the last line may still grow, it is not colored
+					remaining = count;
+					break;
+				}
+				window.set(text, offset, end - offset);
+				classes[count++] = request.ruleSet.classify(window);
+				offset = next;
+			}
+			window.set(null, 0, 0);
+			if(count > 0) {
+				post(request, Arrays.copyOfRange(request.sequences, first, first + count),
+						count < classes.length ? Arrays.copyOf(classes, count) : classes);
+			}
+			first += count;
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * @return the end of the line without its delimiter, the end of the line
+	 * if it has no delimiter
+	 */
+	private static int getContentEnd(CharSequence text, int offset, int next) {
+		if(next == offset) {
+			return next;
+		}
+		char last = text.charAt(next - 1);
+		if(last == '\n') {
+			return next - 2 >= offset && text.charAt(next - 2) == '\r' ? next - 2 : next - 1;
+		}
+		return last == '\r' ? next - 1 : next;
+	}
+
+	private void post(final Request request, final long[] sequences, final int[] classes) {
+		if(display.isDisposed()) {
+			return;
+		}
+		display.asyncExec(new Runnable() {
+			public void run() {
+				repairer.classified(request.document, request.generation, sequences, classes);
+			}
+		});
+	}
+
+	// Inner classes -----------------------------------------------------------
+
+	private static class Request {
+
+		private final LogDocument document;
+		private final LogSnapshot text;
+		private final int offset;
+		private final long[] sequences;
+		private final RuleSet ruleSet;
+		private final int generation;
+
+		private Request(LogDocument document, LogSnapshot text, int offset, long[] sequences, RuleSet ruleSet, int generation) {
+			this.document = document;
+			this.text = text;
+			this.offset = offset;
+			this.sequences = sequences;
+			this.ruleSet = ruleSet;
+			this.generation = generation;
+		}
+	}
+}
@@ -1,24 +1,32 @@
 package de.anbos.eclipse.logviewer.plugin.viewer;
 
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.ITextViewerExtension2;
 import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.IViewportListener;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextAttribute;
 import org.eclipse.jface.text.TextPresentation;
 import org.eclipse.jface.text.presentation.IPresentationDamager;
 import org.eclipse.jface.text.presentation.IPresentationRepairer;
 import org.eclipse.jface.text.rules.IToken;
-import org.eclipse.jface.text.rules.ITokenScanner;
-import org.eclipse.jface.text.rules.Token;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 
 import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
 import de.anbos.eclipse.logviewer.plugin.Logger;
+import de.anbos.eclipse.logviewer.plugin.file.document.LogDocument;
 import de.anbos.eclipse.logviewer.plugin.viewer.rule.TokenData;
 
 /*
@@ -38,26 +46,76 @@ import de.anbos.eclipse.logviewer.plugin.viewer.rule.TokenData;
 
 public class DamageRepairer implements IPresentationDamager, IPresentationRepairer {
 
+    // Constant ---------------------------------------------------------------------
+
+    /** cached for lines no rule matches */
+    private static final Object NO_MATCH = new Object();
+
+    /** lines styled above and below the visible ones */
+    private static final int STYLING_MARGIN = 100;
+
+    /** nanoseconds the UI thread classifies lines, the rest is done in the background */
+    private static final long INLINE_CLASSIFICATION_TIME = 20000000L;
+
     // Attribute --------------------------------------------------------------------
 
     private Logger logger;
-    private ITokenScanner scanner;
+    private DynamicRuleBasedScanner scanner;
     private TextAttribute defaultTextAttribute;
     private IDocument document;
+    // the classified lines of every document shown, released with the document
+    private Map<IDocument,LineClassCache> caches;
+    // the line handed to the rules, moved over the text of a log document
+    private TextWindow window;
+    private ITextViewer viewer;
+    private ClassificationJob classificationJob;
+    // the lines of a log document which have their style, empty if first > last.
+    // They are moved with the lines inserted or removed in front of them.
+    private int styledFirst;
+    private int styledLast;
+    private StyledLinesListener styledLinesListener;
 
     // Constructor ------------------------------------------------------------------
 
-    public DamageRepairer(ITokenScanner scanner) {
+    public DamageRepairer(DynamicRuleBasedScanner scanner) {
         logger = LogViewerPlugin.getDefault().getLogger();
         Assert.isNotNull(scanner);
         this.scanner = scanner;
         defaultTextAttribute = new TextAttribute(null);
+        caches = new WeakHashMap<IDocument,LineClassCache>();
+        window = new TextWindow();
+        styledLinesListener = new StyledLinesListener();
+        clearStyledLines();
     }
 
     // Public -----------------------------------------------------------------------
 
     public void setDocument(IDocument document) {
+        if(this.document instanceof LogDocument) {
+            this.document.removePrenotifiedDocumentListener(styledLinesListener);
+        }
         this.document = document;
+        clearStyledLines();
+        if(document instanceof LogDocument) {
+            // notified before the viewer presents the change
+            document.addPrenotifiedDocumentListener(styledLinesListener);
+        }
+    }
+
+    /**
+     * restricts the styling of a log document to the lines visible in the
+     * viewer and a margin around them. The other lines are styled when they
+     * are scrolled into view.
+     */
+    public void setViewer(ITextViewer viewer) {
+        this.viewer = viewer;
+        viewer.addViewportListener(new StylingViewportListener());
+        classificationJob = new ClassificationJob(this,viewer.getTextWidget().getDisplay());
+        viewer.getTextWidget().addDisposeListener(new DisposeListener() {
+            public void widgetDisposed(DisposeEvent e) {
+                classificationJob.dispose();
+            }
+        });
     }
 
     public IRegion getDamageRegion(ITypedRegion partition, DocumentEvent event, boolean documentPartitioningChanged) {
@@ -85,35 +143,216 @@ public class DamageRepairer implements IPresentationDamager, IPresentationRepair
         return partition;
     }
 
+    /**
+     * colors every line of the region with the rule which matches it first.
+     * The result is kept per line of a log document, so a line is scanned once
+     * while it is in the backlog, until the rules are changed. Of a log
+     * document only the lines near the viewport are colored. The lines which
+     * are not classified within INLINE_CLASSIFICATION_TIME are left to the
+     * background, they are colored when their classes arrive.
+     */
     public void createPresentation(TextPresentation presentation, ITypedRegion region) {
-        int start= region.getOffset();
-        int length= 0;
-        boolean firstToken= true;
-        TextAttribute attribute = getTokenTextAttribute(Token.UNDEFINED);
+        try {
+            int firstLine = document.getLineOfOffset(region.getOffset());
+            int lastLine = document.getLineOfOffset(region.getOffset() + region.getLength());
+            if(viewer != null && document instanceof LogDocument) {
+                int top = Math.max(0,viewer.getTopIndex() - STYLING_MARGIN);
+                int bottom = Math.max(viewer.getTopIndex(),viewer.getBottomIndex()) + STYLING_MARGIN;
+                int from = Math.max(firstLine,top);
+                int to = Math.min(lastLine,bottom);
+                updateStyledLines(firstLine,lastLine,from,to);
+                firstLine = from;
+                lastLine = to;
+            }
+            boolean background = classificationJob != null && document instanceof LogDocument;
+            long deadline = System.nanoTime() + INLINE_CLASSIFICATION_TIME;
+            int deferredFirst = -1;
+            int deferredLast = -1;
+            for(int line = firstLine; line <= lastLine; line++) {
+                boolean scan = !background || System.nanoTime() - deadline < 0;
+                Object lineClass = getLineClass(line,scan);
+                if(lineClass == null) {
+                    if(deferredFirst < 0) {
+                        deferredFirst = line;
+                    }
+                    deferredLast = line;
+                } else if(lineClass != NO_MATCH) {
+                    addRange(presentation,document.getLineOffset(line),document.getLineLength(line),(TextAttribute)lineClass,false);
+                }
+            }
+            if(deferredFirst >= 0) {
+                LogDocument logDocument = (LogDocument)document;
+                int offset = logDocument.getLineOffset(deferredFirst);
+                // the numbers of lines inserted in front of others are not consecutive
+                long[] sequences = new long[deferredLast - deferredFirst + 1];
+                for(int i = 0; i < sequences.length; i++) {
+                    sequences[i] = logDocument.getLineSequence(deferredFirst + i);
+                }
+                // the job closes the snapshot once the lines are classified, so the
+                // appends reuse the text again
+                classificationJob.classify(logDocument,logDocument.getSnapshot(),offset,sequences,
+                        scanner.getBackgroundRuleSet(),scanner.getGeneration());
+            }
+        } catch (BadLocationException e) {
+            logger.logInfo("unable to find location in document to repair a given region",e); //$NON-NLS-1$
+        }
+    }
 
-        scanner.setRange(document,start,region.getLength());
+    // Package ----------------------------------------------------------------------
 
-        while (true) {
-            IToken resultToken = scanner.nextToken();
-            if (resultToken.isEOF()) {
-                break;
-            }
-            if(resultToken.equals(Token.UNDEFINED)) {
-            	continue;
+    /**
+     * called on the UI thread with the classes computed in the background.
+     * The classes of lines which are gone meanwhile or of older rules are
+     * dropped, the remaining lines are presented again.
+     * @param sequences the sequences of the lines of the classes
+     * @param classes the indexes of the matching rules or -1
+     */
+    void classified(LogDocument document, int generation, long[] sequences, int[] classes) {
+        LineClassCache cache = caches.get(document);
+        if(cache == null || generation != scanner.getGeneration()) {
+            return;
+        }
+        int lines = document.getNumberOfLines();
+        int from = -1;
+        int to = -1;
+        for(int i = 0; i < classes.length; i++) {
+            int line = document.getLineOfSequence(sequences[i]);
+            if(line < 0) {
+                // trimmed or replaced meanwhile
+                continue;
             }
-            if (!firstToken) {
-            	addRange(presentation,start,length,attribute,true);
+            Object lineClass = NO_MATCH;
+            if(classes[i] >= 0) {
+                lineClass = getTokenTextAttribute(scanner.getToken(classes[i]));
             }
-            firstToken = false;
-            attribute = getTokenTextAttribute(resultToken);
-            start = scanner.getTokenOffset();
-            length = scanner.getTokenLength();
+            cache.put(sequences[i],generation,lineClass,lines);
+            from = from < 0 ? line : Math.min(from,line);
+            to = Math.max(to,line);
+        }
+        if(from < 0 || document != this.document || viewer.getTextWidget().isDisposed()) {
+            return;
+        }
+        try {
+            int offset = document.getLineOffset(from);
+            int end = document.getLineOffset(to) + document.getLineLength(to);
+            ((ITextViewerExtension2)viewer).invalidateTextPresentation(offset,end - offset);
+        } catch (BadLocationException e) {
+            logger.logInfo("unable to find location in document to repair a given region",e); //$NON-NLS-1$
         }
-        addRange(presentation,start,length,attribute,true);
     }
 
     // Private ----------------------------------------------------------------------
 
+    private void clearStyledLines() {
+        styledFirst = 0;
+        styledLast = -1;
+    }
+
+    /**
+     * moves the styled lines behind a change. The lines first..last were
+     * replaced by the given number of lines and lose their style, of the
+     * styled lines around them the larger part is kept.
+     */
+    private void moveStyledLines(int first, int last, int lines) {
+        if(styledFirst > styledLast || styledLast < first) {
+            return;
+        }
+        int shift = first + lines - last;
+        if(styledFirst > last) {
+            styledFirst += shift;
+            styledLast += shift;
+        } else if(styledFirst >= first && styledLast <= last) {
+            clearStyledLines();
+        } else if(first - styledFirst >= styledLast - last) {
+            styledLast = first - 1;
+        } else {
+            styledFirst = last + 1 + shift;
+            styledLast += shift;
+        }
+    }
+
+    /**
+     * keeps track of the lines which have their style. The presentation of a
+     * region replaces all styles in it, only the lines from..to get a new one.
+     */
+    private void updateStyledLines(int first, int last, int from, int to) {
+        if(first <= styledFirst && styledLast <= last) {
+            clearStyledLines();
+        } else if(first <= styledFirst && styledFirst <= last) {
+            styledFirst = last + 1;
+        } else if(first <= styledLast && styledLast <= last) {
+            styledLast = first - 1;
+        } else if(styledFirst < first && last < styledLast) {
+            // keep the larger part
+            if(first - styledFirst >= styledLast - last) {
+                styledLast = first - 1;
+            } else {
+                styledFirst = last + 1;
+            }
+        }
+        if(from > to) {
+            return;
+        }
+        if(styledFirst > styledLast || from > styledLast + 1 || to < styledFirst - 1) {
+            styledFirst = from;
+            styledLast = to;
+        } else {
+            styledFirst = Math.min(styledFirst,from);
+            styledLast = Math.max(styledLast,to);
+        }
+    }
+
+    /**
+     * @param scan false if the line must not be classified now
+     * @return the attribute of the rule matching the line, NO_MATCH or null if
+     * the line is not classified yet
+     */
+    private Object getLineClass(int line, boolean scan) throws BadLocationException {
+        if(document.getLineDelimiter(line) == null) {
+            // the rules match complete lines only, the last one may still grow
+            return NO_MATCH;
+        }
+        if(!(document instanceof LogDocument)) {
+            TextAttribute attribute = scanLine(line);
+            return attribute != null ? attribute : NO_MATCH;
+        }
+        LineClassCache cache = caches.get(document);
+        if(cache == null) {
+            cache = new LineClassCache();
+            caches.put(document,cache);
+        }
+        long sequence = ((LogDocument)document).getLineSequence(line);
+        int generation = scanner.getGeneration();
+        Object lineClass = cache.get(sequence,generation);
+        if(lineClass == null && scan) {
+            TextAttribute attribute = scanLine(line);
+            lineClass = attribute != null ? attribute : NO_MATCH;
+            cache.put(sequence,generation,lineClass,document.getNumberOfLines());
+        }
+        return lineClass;
+    }
+
+    /**
+     * runs the rules on the line without its delimiter. The line of a log
+     * document is not copied, the rules read it from the text store.
+     */
+    private TextAttribute scanLine(int line) throws BadLocationException {
+        int offset = document.getLineOffset(line);
+        int length = document.getLineLength(line) - document.getLineDelimiter(line).length();
+        IToken resultToken;
+        if(document instanceof LogDocument) {
+            window.set(((LogDocument)document).getText(),offset,length);
+            resultToken = scanner.evaluate(window);
+            window.set(null,0,0);
+        } else {
+            resultToken = scanner.evaluate(document.get(offset,length));
+        }
+        if(resultToken.isUndefined()) {
+            return null;
+        }
+        return getTokenTextAttribute(resultToken);
+    }
+
     /**
      * Returns the end offset of the line that contains the specified offset or
      * if the offset is inside a line delimiter, the end offset of the next line.
@@ -182,4 +421,66 @@ public class DamageRepairer implements IPresentationDamager, IPresentationRepair
             presentation.addStyleRange(styleRange);
         }
     }
+
+    // Inner classes ----------------------------------------------------------------
+
+    /**
+     * styles the lines of a log document which are scrolled into view
+     */
+    private class StylingViewportListener implements IViewportListener {
+
+        public void viewportChanged(int verticalOffset) {
+            if(!(document instanceof LogDocument) || viewer.getDocument() != document) {
+                return;
+            }
+            LogDocument logDocument = (LogDocument)document;
+            int lastLine = logDocument.getNumberOfLines() - 1;
+            int first = Math.min(lastLine,Math.max(0,viewer.getTopIndex() - STYLING_MARGIN));
+            int last = Math.min(lastLine,Math.max(viewer.getTopIndex(),viewer.getBottomIndex()) + STYLING_MARGIN);
+            if(styledFirst <= first && last <= styledLast) {
+                return;
+            }
+            try {
+                int offset = logDocument.getLineOffset(first);
+                int end = logDocument.getLineOffset(last) + logDocument.getLineLength(last);
+                ((ITextViewerExtension2)viewer).invalidateTextPresentation(offset,end - offset);
+            } catch (BadLocationException e) {
+                logger.logInfo("unable to find location in document to repair a given region",e); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * keeps the styled lines of a log document in place while lines are
+     * appended, trimmed or inserted in front of them
+     */
+    private class StyledLinesListener implements IDocumentListener {
+
+        // the lines replaced by the change in progress
+        private int changeFirst;
+        private int changeLast;
+
+        public void documentAboutToBeChanged(DocumentEvent event) {
+            try {
+                changeFirst = event.getDocument().getLineOfOffset(event.getOffset());
+                changeLast = event.getDocument().getLineOfOffset(event.getOffset() + event.getLength());
+            } catch (BadLocationException e) {
+                changeFirst = -1;
+            }
+        }
+
+        public void documentChanged(DocumentEvent event) {
+            if(changeFirst < 0) {
+                clearStyledLines();
+                return;
+            }
+            int length = event.getText() == null ? 0 : event.getText().length();
+            try {
+                int lines = event.getDocument().getLineOfOffset(event.getOffset() + length) - changeFirst;
+                moveStyledLines(changeFirst,changeLast,lines);
+            } catch (BadLocationException e) {
+                clearStyledLines();
+            }
+        }
+    }
 }
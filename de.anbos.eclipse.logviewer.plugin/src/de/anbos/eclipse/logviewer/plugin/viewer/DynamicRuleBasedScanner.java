@@ -20,6 +20,7 @@ import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
 import de.anbos.eclipse.logviewer.plugin.preferences.PreferenceValueConverter;
 import de.anbos.eclipse.logviewer.plugin.viewer.rule.ILogFileToolRule;
 import de.anbos.eclipse.logviewer.plugin.viewer.rule.RuleComparator;
+import de.anbos.eclipse.logviewer.plugin.viewer.rule.RuleSet;
 
 /*
  * Copyright (c) 2007 - 2011 by Michael Mimo Moratti
@@ -53,6 +54,9 @@ public class DynamicRuleBasedScanner implements ICharacterScanner, ITokenScanner
     private int tokenOffset;
     private char[][] delimiter;
     private List<ILogFileToolRule> rules;
+    private RuleSet ruleSet;
+    private RuleSet backgroundRuleSet;
+    private int generation;
 
     // Constructor ------------------------------------------------------------------
 
@@ -178,6 +182,41 @@ public class DynamicRuleBasedScanner implements ICharacterScanner, ITokenScanner
 		return rangeEnd - getTokenOffset();
     }
 
+    /**
+     * classifies a whole line in one pass over the rules compiled into a
+     * RuleSet, instead of trying every rule at every offset like nextToken()
+     * @param line a line without its delimiter
+     * @return the token of the rule with the highest priority matching the
+     * line or Token.UNDEFINED
+     */
+    public IToken evaluate(CharSequence line) {
+        return ruleSet.evaluate(line);
+    }
+
+    /**
+     * @return the token of the rule with the index of RuleSet.classify()
+     */
+    public IToken getToken(int rule) {
+        return ruleSet.getToken(rule);
+    }
+
+    /**
+     * @return the same rules for a background thread, the matchers of the
+     * rules must not be shared between threads. The index of a rule is the
+     * same in both sets.
+     */
+    public RuleSet getBackgroundRuleSet() {
+        return backgroundRuleSet;
+    }
+
+    /**
+     * @return a number which changes whenever the rules are loaded again, the
+     * results of older rules are not valid anymore
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
     // Private -----------------------------------------------------------------
 
     private void loadRules(String newRules) {
@@ -185,6 +224,11 @@ public class DynamicRuleBasedScanner implements ICharacterScanner, ITokenScanner
 		rules.clear();
 		rules.addAll(newRulesList);
 		Collections.sort(rules,new RuleComparator());
+		ruleSet = new RuleSet(rules);
+		List<ILogFileToolRule> backgroundRules = PreferenceValueConverter.asRuleArray(newRules);
+		Collections.sort(backgroundRules,new RuleComparator());
+		backgroundRuleSet = new RuleSet(backgroundRules);
+		generation++;
     }
 
 	// Inner classes ----------------------------------------------------------------
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.viewer;
+
+/**
+ * Remembers the result of the coloring rules for the lines of one document.
+ * The lines are identified by their sequence number, which does not change
+ * while the line is in the backlog, and the generation of the rules which
+ * classified them. The lines of a document have mostly consecutive numbers,
+ * so the cache is a direct mapped array with at least as many slots as lines.
+ * Lines inserted in front of others may take the slot of another line, which
+ * is classified again then.
+ */
+public class LineClassCache {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// Attribute ---------------------------------------------------------------
+
+	private long[] sequences;
+	private int[] generations;
+	private Object[] lineClasses;
+	private int mask;
+
+	// Constructor -------------------------------------------------------------
+
+	public LineClassCache() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @return the class stored for the line or null if it has to be classified
+	 */
+	public Object get(long sequence, int generation) {
+		int index = (int)sequence & mask;
+		if(sequences[index] == sequence && generations[index] == generation) {
+			return lineClasses[index];
+		}
+		return null;
+	}
+
+	/**
+	 * @param lineCount the number of lines of the document, the cache grows
+	 * to keep all of them
+	 */
+	public void put(long sequence, int generation, Object lineClass, int lineCount) {
+		if(lineCount > sequences.length) {
+			grow(lineCount);
+		}
+		int index = (int)sequence & mask;
+		sequences[index] = sequence;
+		generations[index] = generation;
+		lineClasses[index] = lineClass;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private void allocate(int capacity) {
+		sequences = new long[capacity];
+		generations = new int[capacity];
+		lineClasses = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private void grow(int minCapacity) {
+		long[] oldSequences = sequences;
+		int[] oldGenerations = generations;
+		Object[] oldClasses = lineClasses;
+		int capacity = sequences.length;
+		while(capacity < minCapacity) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+		for(int i = 0; i < oldSequences.length; i++) {
+			if(oldClasses[i] != null) {
+				int index = (int)oldSequences[i] & mask;
+				sequences[index] = oldSequences[i];
+				generations[index] = oldGenerations[i];
+				lineClasses[index] = oldClasses[i];
+			}
+		}
+	}
+}
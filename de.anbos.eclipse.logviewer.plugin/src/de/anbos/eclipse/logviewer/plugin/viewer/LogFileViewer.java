@@ -6,6 +6,7 @@ import org.eclipse.jface.resource.JFaceResources;
 import org.eclipse.jface.text.CursorLinePainter;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextViewerExtension2;
+import org.eclipse.jface.text.IViewportListener;
 import org.eclipse.jface.text.TextViewer;
 import org.eclipse.jface.text.presentation.PresentationReconciler;
 import org.eclipse.jface.text.source.SourceViewer;
@@ -22,6 +23,7 @@ import org.eclipse.swt.widgets.Display;
 
 import de.anbos.eclipse.logviewer.plugin.ILogViewerConstants;
 import de.anbos.eclipse.logviewer.plugin.LogViewerPlugin;
+import de.anbos.eclipse.logviewer.plugin.file.document.LogDocument;
 
 /*
  * Copyright (c) 2007 - 2011 by Michael Mimo Moratti
@@ -53,6 +55,7 @@ public class LogFileViewer {
 
     private boolean showWhenUpdated;
     private boolean showTopOfFile;
+    private boolean pageRequested;
 
     PropertyChangeListener propertyChangeListener = null;
 
@@ -74,6 +77,7 @@ public class LogFileViewer {
         store.addPropertyChangeListener(propertyChangeListener);
         createCursorLinePainter();
         createAndInstallPresentationReconciler();
+        txtViewer.addViewportListener(new PagingViewportListener());
     }
 
     // Public ------------------------------------------------------------------
@@ -160,10 +164,46 @@ public class LogFileViewer {
         presentationReconciler.setDamager(dr,IDocument.DEFAULT_CONTENT_TYPE);
         presentationReconciler.setRepairer(dr,IDocument.DEFAULT_CONTENT_TYPE);
         presentationReconciler.install(txtViewer);
+        dr.setViewer(txtViewer);
     }
 
     // Inner classes ----------------------------------------------------------------
 
+    /**
+     * loads the previous page of a paged document when the top is reached and
+     * the next one when the bottom of a detached document is reached
+     */
+    private class PagingViewportListener implements IViewportListener {
+
+        public void viewportChanged(int verticalOffset) {
+            if(pageRequested || !(document instanceof LogDocument) || !((LogDocument)document).isPaged()) {
+                return;
+            }
+            final LogDocument logDocument = (LogDocument)document;
+            final boolean atTop = txtViewer.getTopIndex() == 0 && logDocument.hasPreviousPage();
+            boolean atBottom = logDocument.isDetached() && txtViewer.getBottomIndex() >= logDocument.getNumberOfLines() - 1;
+            if(!atTop && !atBottom) {
+                return;
+            }
+            pageRequested = true;
+            // do not change the document while the viewer is still scrolling
+            Display.getCurrent().asyncExec(new Runnable() {
+                public void run() {
+                    pageRequested = false;
+                    if(document != logDocument || txtViewer.getTextWidget().isDisposed()) {
+                        return;
+                    }
+                    int topIndex = txtViewer.getTopIndex();
+                    if(atTop) {
+                        txtViewer.setTopIndex(topIndex + logDocument.loadPreviousPage());
+                    } else {
+                        txtViewer.setTopIndex(Math.max(0, topIndex - logDocument.loadNextPage()));
+                    }
+                }
+            });
+        }
+    }
+
     private class PropertyChangeListener implements IPropertyChangeListener {
 
             /* (non-Javadoc)
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.viewer;
+
+/**
+ * A part of a text, e.g. a line of a document, which is moved over the text
+ * instead of copying every part into a new string. The window is reused, so
+ * it is only valid until it is moved again or the text changes.
+ */
+public class TextWindow implements CharSequence {
+
+	// Attribute ---------------------------------------------------------------
+
+	private CharSequence text;
+	private int offset;
+	private int length;
+
+	// Public ------------------------------------------------------------------
+
+	public void set(CharSequence text, int offset, int length) {
+		this.text = text;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length() {
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index) {
+		if(index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+		return text.charAt(offset + index);
+	}
+
+	/**
+	 * @return a copy of the part, the window itself is moved later on
+	 */
+	public CharSequence subSequence(int begin, int end) {
+		if(begin < 0 || end > length || begin > end) {
+			throw new IndexOutOfBoundsException(begin + "-" + end); //$NON-NLS-1$
+		}
+		return text.subSequence(offset + begin, offset + end).toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return text.subSequence(offset, offset + length).toString();
+	}
+}
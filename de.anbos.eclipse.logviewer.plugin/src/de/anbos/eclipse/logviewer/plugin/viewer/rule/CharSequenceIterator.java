@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.viewer.rule;
+
+import org.apache.regexp.CharacterIterator;
+
+/**
+ * Lets a Jakarta RE read any CharSequence. RE.match(String) wraps the string
+ * into a new iterator for every match, this one is reused for every line.
+ */
+class CharSequenceIterator implements CharacterIterator {
+
+	// Attribute ---------------------------------------------------------------
+
+	private CharSequence text;
+
+	// Package -----------------------------------------------------------------
+
+	void setText(CharSequence text) {
+		this.text = text;
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see org.apache.regexp.CharacterIterator#substring(int, int)
+	 */
+	public String substring(int beginIndex, int endIndex) {
+		return text.subSequence(beginIndex, endIndex).toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.regexp.CharacterIterator#substring(int)
+	 */
+	public String substring(int beginIndex) {
+		return substring(beginIndex, text.length());
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.regexp.CharacterIterator#charAt(int)
+	 */
+	public char charAt(int pos) {
+		return text.charAt(pos);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.regexp.CharacterIterator#isEnd(int)
+	 */
+	public boolean isEnd(int pos) {
+		return pos >= text.length();
+	}
+}
@@ -1,5 +1,7 @@
 package de.anbos.eclipse.logviewer.plugin.viewer.rule;
 
+import org.eclipse.jface.text.rules.IToken;
+
 /*
  * Copyright (c) 2007 - 2011 by Michael Mimo Moratti
  * Licensed under the Apache License, Version 2.0 (the &quot;License&quot;);
@@ -21,4 +23,32 @@ public interface ILogFileToolRule {
 	 * returns the actual priority of the given rule
 	 */
 	public int getPriority();
+
+	/**
+	 * returns the token of the rule
+	 */
+	public IToken getSuccessToken();
+
+	/**
+	 * returns true if the rule matches the line, the line has no delimiter.
+	 * The line is only valid during the call, it may be a window into the text.
+	 */
+	public boolean matches(CharSequence line);
+
+	/**
+	 * returns the text of the rule if the rule matches every line containing
+	 * it and nothing else, null if the rule is a pattern
+	 */
+	public String getLiteral();
+
+	/**
+	 * returns a text every line matching the rule contains, null if there is
+	 * none or it is not known
+	 */
+	public String getRequiredLiteral();
+
+	/**
+	 * returns true if the rule ignores the case
+	 */
+	public boolean isCaseInsensitive();
 }
@@ -29,6 +29,12 @@ public class JakartaRegExpRule implements IPredicateRule, ILogFileToolRule {
 	private RE regexp;
 	private Token successToken;
 	private int priority;
+	private String literal;
+	private String requiredLiteral;
+	private boolean caseInsensitive;
+	// reused for every line
+	private StringBuilder buffer;
+	private CharSequenceIterator iterator;
 
 	// Constructor -------------------------------------------------------------
 
@@ -38,6 +44,11 @@ public class JakartaRegExpRule implements IPredicateRule, ILogFileToolRule {
 		if (ruleDesc.isCaseInsensitive())
 			flags = org.apache.regexp.RE.MATCH_CASEINDEPENDENT;
 		regexp.setMatchFlags(flags);
+		caseInsensitive = ruleDesc.isCaseInsensitive();
+		buffer = new StringBuilder();
+		iterator = new CharSequenceIterator();
+		literal = RuleSet.asLiteral(ruleDesc.getRuleValue());
+		requiredLiteral = LiteralExtractor.getRequiredLiteral(ruleDesc.getRuleValue());
 		priority = ruleDesc.getPriority();
 		successToken = new Token(new TokenData(TextAttributeFactory.getTextAttribute(ruleDesc),priority));
 	}
@@ -51,15 +62,36 @@ public class JakartaRegExpRule implements IPredicateRule, ILogFileToolRule {
 	}
 
 	public IToken evaluate(ICharacterScanner scanner, boolean resume) {
-		String line = returnNextCompleteLine(scanner);
+		CharSequence line = returnNextCompleteLine(scanner);
 		if(line != null) {
-			if(regexp.match(line)) {
+			if(matches(line)) {
 				return successToken;
 			}
 		}
 		return Token.UNDEFINED;
 	}
 
+	public boolean matches(CharSequence line) {
+		iterator.setText(line);
+		try {
+			return regexp.match(iterator,0);
+		} finally {
+			iterator.setText(null);
+		}
+	}
+
+	public String getLiteral() {
+		return literal;
+	}
+
+	public String getRequiredLiteral() {
+		return requiredLiteral;
+	}
+
+	public boolean isCaseInsensitive() {
+		return caseInsensitive;
+	}
+
 	public IToken evaluate(ICharacterScanner scanner) {
 		return evaluate(scanner,false);
 	}
@@ -70,15 +102,15 @@ public class JakartaRegExpRule implements IPredicateRule, ILogFileToolRule {
 
 	// Private -----------------------------------------------------------------
 
-	private String returnNextCompleteLine(ICharacterScanner scanner) {
+	private CharSequence returnNextCompleteLine(ICharacterScanner scanner) {
 
 		char[][] lineDelimiters= scanner.getLegalLineDelimiters();
 
 		int c;
-		StringBuffer buffer = new StringBuffer();
+		buffer.setLength(0);
 		while((c = scanner.read()) != ICharacterScanner.EOF) {
 			if(isEOLCharacter(c,lineDelimiters)) {
-				return buffer.toString();
+				return buffer;
 			}
 			buffer.append((char)c);
 		}
@@ -15,6 +15,7 @@
 
 package de.anbos.eclipse.logviewer.plugin.viewer.rule;
 
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.eclipse.jface.text.rules.ICharacterScanner;
 import org.eclipse.jface.text.rules.IPredicateRule;
@@ -29,6 +30,11 @@ public class JavaRegExpRule implements IPredicateRule, ILogFileToolRule {
 	private boolean find;
 	private Token successToken;
 	private int priority;
+	private String literal;
+	private String requiredLiteral;
+	// reused for every line
+	private StringBuilder buffer;
+	private Matcher matcher;
 
 	// Constructor -------------------------------------------------------------
 
@@ -40,6 +46,11 @@ public class JavaRegExpRule implements IPredicateRule, ILogFileToolRule {
 		if (ruleDesc.getMatchMode().startsWith("find"))
 			find = true;
 		regexp = Pattern.compile(ruleDesc.getRuleValue(),flags);
+		matcher = regexp.matcher("");
+		buffer = new StringBuilder();
+		// a literal matches the complete text only if the text is the literal
+		literal = find ? RuleSet.asLiteral(ruleDesc.getRuleValue()) : null;
+		requiredLiteral = LiteralExtractor.getRequiredLiteral(ruleDesc.getRuleValue());
 		priority = ruleDesc.getPriority();
 		successToken = new Token(new TokenData(TextAttributeFactory.getTextAttribute(ruleDesc),priority));
 	}
@@ -53,21 +64,55 @@ public class JavaRegExpRule implements IPredicateRule, ILogFileToolRule {
 	}
 
 	public IToken evaluate(ICharacterScanner scanner, boolean resume) {
-		String line = returnNextCompleteLine(scanner);
+		CharSequence line = returnNextCompleteLine(scanner);
 		if(line != null) {
-			if (find) {
-				if(regexp.matcher(line).find()) {
-					return successToken;
-				}
-			} else {
-				if(regexp.matcher(line).matches()) {
-					return successToken;
-				}
+			if(matches(line)) {
+				return successToken;
 			}
 		}
 		return Token.UNDEFINED;
 	}
 
+	public boolean matches(CharSequence line) {
+		matcher.reset(line);
+		try {
+			if (find) {
+				return matcher.find();
+			}
+			return matcher.matches();
+		} finally {
+			// do not keep the line
+			matcher.reset("");
+		}
+	}
+
+	public String getLiteral() {
+		return literal;
+	}
+
+	public String getRequiredLiteral() {
+		return requiredLiteral;
+	}
+
+	public boolean isCaseInsensitive() {
+		return (regexp.flags() & Pattern.CASE_INSENSITIVE) != 0;
+	}
+
+	/**
+	 * returns the compiled pattern of the rule
+	 */
+	public Pattern getPattern() {
+		return regexp;
+	}
+
+	/**
+	 * returns true if the pattern has to be found in the line, false if it has
+	 * to match the complete line
+	 */
+	public boolean isFind() {
+		return find;
+	}
+
 	public IToken evaluate(ICharacterScanner scanner) {
 		return evaluate(scanner,false);
 	}
@@ -78,15 +123,15 @@ public class JavaRegExpRule implements IPredicateRule, ILogFileToolRule {
 
 	// Private -----------------------------------------------------------------
 
-	private String returnNextCompleteLine(ICharacterScanner scanner) {
+	private CharSequence returnNextCompleteLine(ICharacterScanner scanner) {
 
 		char[][] lineDelimiters= scanner.getLegalLineDelimiters();
 
 		int c;
-		StringBuffer buffer = new StringBuffer();
+		buffer.setLength(0);
 		while((c = scanner.read()) != ICharacterScanner.EOF) {
 			if(isEOLCharacter(c,lineDelimiters)) {
-				return buffer.toString();
+				return buffer;
 			}
 			buffer.append((char)c);
 		}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.viewer.rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton which finds any number of literals in one pass over
+ * a line. The automaton runs on case folded chars, so case insensitive and
+ * case sensitive literals share it, a hit of a case sensitive literal is
+ * verified against the line. The literals are numbered in the order they are
+ * passed.
+ */
+class LiteralAutomaton {
+
+	// Attribute ---------------------------------------------------------------
+
+	private String[] literals;
+	private boolean[] caseInsensitive;
+
+	// transitions of every state, the chars are sorted for a binary search
+	private char[][] keys;
+	private int[][] targets;
+	private int[] fail;
+	// the literals ending in a state, including those of its fail states
+	private int[][] outputs;
+
+	// Constructor -------------------------------------------------------------
+
+	LiteralAutomaton(String[] literals, boolean[] caseInsensitive) {
+		this.literals = literals;
+		this.caseInsensitive = caseInsensitive;
+		build();
+	}
+
+	// Package -----------------------------------------------------------------
+
+	/**
+	 * marks the literals contained in the line
+	 * @param found set to true for the number of every literal found, the
+	 * caller has to clear it
+	 */
+	void find(CharSequence line, boolean[] found) {
+		int state = 0;
+		int length = line.length();
+		for(int i = 0; i < length; i++) {
+			char c = fold(line.charAt(i));
+			int next;
+			while((next = next(state, c)) < 0 && state != 0) {
+				state = fail[state];
+			}
+			state = next < 0 ? 0 : next;
+			int[] output = outputs[state];
+			for(int j = 0; j < output.length; j++) {
+				int literal = output[j];
+				if(!found[literal] && (caseInsensitive[literal] || regionMatches(line, i + 1 - literals[literal].length(), literals[literal]))) {
+					found[literal] = true;
+				}
+			}
+		}
+	}
+
+	// Private -----------------------------------------------------------------
+
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static boolean regionMatches(CharSequence line, int offset, String literal) {
+		for(int i = 0; i < literal.length(); i++) {
+			if(line.charAt(offset + i) != literal.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int next(int state, char c) {
+		char[] stateKeys = keys[state];
+		int low = 0;
+		int high = stateKeys.length - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			char key = stateKeys[middle];
+			if(key < c) {
+				low = middle + 1;
+			} else if(key > c) {
+				high = middle - 1;
+			} else {
+				return targets[state][middle];
+			}
+		}
+		return -1;
+	}
+
+	private void build() {
+		// the trie
+		List<TreeMap<Character,Integer>> trie = new ArrayList<TreeMap<Character,Integer>>();
+		List<List<Integer>> ends = new ArrayList<List<Integer>>();
+		trie.add(new TreeMap<Character,Integer>());
+		ends.add(new ArrayList<Integer>());
+		for(int i = 0; i < literals.length; i++) {
+			int state = 0;
+			for(int j = 0; j < literals[i].length(); j++) {
+				Character c = Character.valueOf(fold(literals[i].charAt(j)));
+				Integer next = trie.get(state).get(c);
+				if(next == null) {
+					next = Integer.valueOf(trie.size());
+					trie.add(new TreeMap<Character,Integer>());
+					ends.add(new ArrayList<Integer>());
+					trie.get(state).put(c, next);
+				}
+				state = next.intValue();
+			}
+			ends.get(state).add(Integer.valueOf(i));
+		}
+		int count = trie.size();
+		keys = new char[count][];
+		targets = new int[count][];
+		for(int state = 0; state < count; state++) {
+			TreeMap<Character,Integer> transitions = trie.get(state);
+			keys[state] = new char[transitions.size()];
+			targets[state] = new int[transitions.size()];
+			int index = 0;
+			for(Character c : transitions.keySet()) {
+				keys[state][index] = c.charValue();
+				targets[state][index] = transitions.get(c).intValue();
+				index++;
+			}
+		}
+		// the fail links breadth first, a fail state is always closer to the root
+		fail = new int[count];
+		outputs = new int[count][];
+		outputs[0] = toSortedArray(ends.get(0), null);
+		int[] queue = new int[count];
+		int head = 0;
+		int tail = 0;
+		for(int i = 0; i < targets[0].length; i++) {
+			int child = targets[0][i];
+			fail[child] = 0;
+			outputs[child] = toSortedArray(ends.get(child), outputs[0]);
+			queue[tail++] = child;
+		}
+		while(head < tail) {
+			int state = queue[head++];
+			for(int i = 0; i < keys[state].length; i++) {
+				char c = keys[state][i];
+				int child = targets[state][i];
+				int link = fail[state];
+				int next;
+				while((next = next(link, c)) < 0 && link != 0) {
+					link = fail[link];
+				}
+				fail[child] = next < 0 ? 0 : next;
+				outputs[child] = toSortedArray(ends.get(child), outputs[fail[child]]);
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	private static int[] toSortedArray(List<Integer> own, int[] inherited) {
+		int inheritedLength = inherited == null ? 0 : inherited.length;
+		int[] result = new int[own.size() + inheritedLength];
+		for(int i = 0; i < own.size(); i++) {
+			result[i] = own.get(i).intValue();
+		}
+		if(inherited != null) {
+			System.arraycopy(inherited, 0, result, own.size(), inheritedLength);
+		}
+		Arrays.sort(result);
+		return result;
+	}
+}
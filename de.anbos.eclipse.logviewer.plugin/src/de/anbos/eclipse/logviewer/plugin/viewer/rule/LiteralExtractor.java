@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.viewer.rule;
+
+/**
+ * Finds a text which every match of a regular expression contains, e.g.
+ * "Exception" for ".*Exception.*" or "ERROR" for ".*\bERROR\b.*". A line
+ * without that text cannot match, so the pattern does not have to run on it.
+ * Only the top level of the pattern is looked at, the content of groups and
+ * classes is skipped. Anything not understood makes the pattern have no
+ * required literal, a wrong literal would hide matching lines. The syntax
+ * common to java.util.regex and Jakarta regexp is understood.
+ */
+class LiteralExtractor {
+
+	// Constant ----------------------------------------------------------------
+
+	// escapes which match nothing
+	private static final String ZERO_WIDTH_ESCAPES = "bBAzZG"; //$NON-NLS-1$
+	// escapes which match one char out of a class
+	private static final String CLASS_ESCAPES = "dDwWsShHvVtnrfae"; //$NON-NLS-1$
+
+	// Package -----------------------------------------------------------------
+
+	/**
+	 * @return the longest text which every match of the pattern contains, null
+	 * if there is none or the pattern is not understood
+	 */
+	static String getRequiredLiteral(String pattern) {
+		if(pattern == null || hasCommentsFlag(pattern)) {
+			return null;
+		}
+		String longest = ""; //$NON-NLS-1$
+		StringBuilder run = new StringBuilder();
+		int length = pattern.length();
+		int i = 0;
+		while(i < length) {
+			char c = pattern.charAt(i);
+			int atomStart = run.length();
+			boolean literal = false;
+			if(c == '\\') {
+				if(i + 1 >= length) {
+					return null;
+				}
+				char escaped = pattern.charAt(i + 1);
+				if(!Character.isLetterOrDigit(escaped)) {
+					run.append(escaped);
+					literal = true;
+				} else if(ZERO_WIDTH_ESCAPES.indexOf(escaped) != -1) {
+					// the chars around it are still next to each other
+					i += 2;
+					continue;
+				} else if(CLASS_ESCAPES.indexOf(escaped) == -1) {
+					// back references, quotes, code points, properties
+					return null;
+				}
+				i += 2;
+			} else if(c == '[') {
+				i = skipClass(pattern, i);
+				if(i < 0) {
+					return null;
+				}
+			} else if(c == '(') {
+				if(isFlagGroup(pattern, i)) {
+					// changes the meaning of the rest of the pattern
+					return null;
+				}
+				i = skipGroup(pattern, i);
+				if(i < 0) {
+					return null;
+				}
+			} else if(c == '^' || c == '$') {
+				i++;
+				continue;
+			} else if(c == '.') {
+				i++;
+			} else if(c == '|' || c == ')' || c == '*' || c == '+' || c == '?' || c == '{') {
+				// an alternative or a quantifier without an atom
+				return null;
+			} else {
+				run.append(c);
+				literal = true;
+				i++;
+			}
+			// a quantifier of the atom
+			if(i < length && isQuantifier(pattern.charAt(i))) {
+				int min;
+				if(pattern.charAt(i) == '{') {
+					int end = pattern.indexOf('}', i);
+					if(end < 0) {
+						return null;
+					}
+					min = parseMinimum(pattern.substring(i + 1, end));
+					if(min < 0) {
+						return null;
+					}
+					i = end + 1;
+				} else {
+					min = pattern.charAt(i) == '+' ? 1 : 0;
+					i++;
+				}
+				if(i < length && (pattern.charAt(i) == '?' || pattern.charAt(i) == '+')) {
+					// lazy or possessive
+					i++;
+				}
+				if(literal && min == 0) {
+					run.setLength(atomStart);
+				}
+				// a repeated char is followed by itself or by the rest
+				literal = false;
+			}
+			if(!literal) {
+				if(run.length() > longest.length()) {
+					longest = run.toString();
+				}
+				run.setLength(0);
+			}
+		}
+		if(run.length() > longest.length()) {
+			longest = run.toString();
+		}
+		return longest.length() > 0 ? longest : null;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	/**
+	 * @return true if the pattern switches comments on somewhere, then a #
+	 * would hide the rest of the line and blanks would mean nothing
+	 */
+	private static boolean hasCommentsFlag(String pattern) {
+		int start = pattern.indexOf("(?"); //$NON-NLS-1$
+		while(start >= 0) {
+			int i = start + 2;
+			while(i < pattern.length() && (Character.isLetter(pattern.charAt(i)) || pattern.charAt(i) == '-')) {
+				if(pattern.charAt(i) == 'x') {
+					return true;
+				}
+				i++;
+			}
+			start = pattern.indexOf("(?", start + 2); //$NON-NLS-1$
+		}
+		return false;
+	}
+
+	private static boolean isQuantifier(char c) {
+		return c == '*' || c == '+' || c == '?' || c == '{';
+	}
+
+	/**
+	 * @return the minimum of a quantifier like {n}, {n,} or {n,m}, -1 if it is
+	 * none
+	 */
+	private static int parseMinimum(String range) {
+		int comma = range.indexOf(',');
+		String minimum = comma < 0 ? range : range.substring(0, comma);
+		if(minimum.length() == 0 || minimum.length() > 9) {
+			return -1;
+		}
+		for(int i = 0; i < minimum.length(); i++) {
+			if(!Character.isDigit(minimum.charAt(i))) {
+				return -1;
+			}
+		}
+		return Integer.parseInt(minimum);
+	}
+
+	/**
+	 * @return true for (?i) and the like, but not for (?i:...)
+	 */
+	private static boolean isFlagGroup(String pattern, int start) {
+		if(start + 2 >= pattern.length() || pattern.charAt(start + 1) != '?') {
+			return false;
+		}
+		int i = start + 2;
+		while(i < pattern.length() && (Character.isLetter(pattern.charAt(i)) || pattern.charAt(i) == '-')) {
+			i++;
+		}
+		return i > start + 2 && i < pattern.length() && pattern.charAt(i) == ')';
+	}
+
+	/**
+	 * @return the index behind the class starting at start, -1 if it is nested
+	 * or not closed
+	 */
+	private static int skipClass(String pattern, int start) {
+		int length = pattern.length();
+		int i = start + 1;
+		if(i < length && pattern.charAt(i) == '^') {
+			i++;
+		}
+		if(i < length && pattern.charAt(i) == ']') {
+			i++;
+		}
+		while(i < length) {
+			char c = pattern.charAt(i);
+			if(c == '\\') {
+				if(i + 1 < length && pattern.charAt(i + 1) == 'Q') {
+					return -1;
+				}
+				i += 2;
+			} else if(c == '[') {
+				return -1;
+			} else if(c == ']') {
+				return i + 1;
+			} else {
+				i++;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index behind the group starting at start, -1 if it is not
+	 * closed
+	 */
+	private static int skipGroup(String pattern, int start) {
+		int length = pattern.length();
+		int depth = 0;
+		int i = start;
+		while(i < length) {
+			char c = pattern.charAt(i);
+			if(c == '\\') {
+				if(i + 1 < length && pattern.charAt(i + 1) == 'Q') {
+					return -1;
+				}
+				i += 2;
+			} else if(c == '[') {
+				i = skipClass(pattern, i);
+				if(i < 0) {
+					return -1;
+				}
+			} else if(c == '(') {
+				depth++;
+				i++;
+			} else if(c == ')') {
+				depth--;
+				i++;
+				if(depth == 0) {
+					return i;
+				}
+			} else {
+				i++;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2012 - 2018 by Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Andre Bossert - initial API and implementation and/or initial documentation
+ *
+ *******************************************************************************/
+
+package de.anbos.eclipse.logviewer.plugin.viewer.rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.Token;
+
+/**
+ * The coloring rules compiled for classifying a line in one pass. The rules
+ * which are plain literals are found by one LiteralAutomaton, the Java rules
+ * which look for a pattern are combined into one alternation. The combined
+ * pattern tells whether any of them matches and the first one matching at the
+ * leftmost position, only rules before that one have to be tried on their own.
+ * Jakarta patterns and Java rules matching the complete line are tried on
+ * their own, but only if no rule before them matched already.
+ *
+ * Most patterns can only match a line containing a certain text, e.g.
+ * ".*Exception.*". These required literals are searched by the same automaton,
+ * a pattern whose literal is missing is not run at all. A set is used by one
+ * thread only.
+ */
+public class RuleSet {
+
+	// Constant ----------------------------------------------------------------
+
+	private static final String REGEXP_SYNTAX = "\\^$.|?*+()[]{}"; //$NON-NLS-1$
+
+	// Attribute ---------------------------------------------------------------
+
+	// in the order of their priority
+	private ILogFileToolRule[] rules;
+	private boolean[] literal;
+	private boolean[] combined;
+
+	private LiteralAutomaton literals;
+	// literal number -> rule, if the literal decides the rule on its own
+	private int[] literalRules;
+	// rule -> literal number of its required literal or -1
+	private int[] requiredLiterals;
+	// the literals found in the line, reused for every line
+	private boolean[] found;
+
+	private Pattern pattern;
+	private Matcher matcher;
+	// alternative -> group of the alternative and rule
+	private int[] combinedGroups;
+	private int[] combinedRules;
+
+	// Constructor -------------------------------------------------------------
+
+	/**
+	 * @param rules the rules sorted by their priority
+	 */
+	public RuleSet(List<ILogFileToolRule> rules) {
+		this.rules = rules.toArray(new ILogFileToolRule[rules.size()]);
+		literal = new boolean[this.rules.length];
+		combined = new boolean[this.rules.length];
+		requiredLiterals = new int[this.rules.length];
+		compileLiterals();
+		compilePatterns();
+	}
+
+	// Public ------------------------------------------------------------------
+
+	/**
+	 * @param line a line without its delimiter
+	 * @return the token of the rule with the highest priority matching the
+	 * line or Token.UNDEFINED
+	 */
+	public IToken evaluate(CharSequence line) {
+		return getToken(classify(line));
+	}
+
+	/**
+	 * @return the token of the rule at the index returned by classify(), or
+	 * Token.UNDEFINED for -1
+	 */
+	public IToken getToken(int rule) {
+		return rule >= 0 ? rules[rule].getSuccessToken() : Token.UNDEFINED;
+	}
+
+	/**
+	 * @param line a line without its delimiter
+	 * @return the index of the rule with the highest priority matching the
+	 * line or -1. The sets built from the same rules return the same index.
+	 */
+	public int classify(CharSequence line) {
+		int best = rules.length;
+		if(literals != null) {
+			Arrays.fill(found, false);
+			literals.find(line, found);
+			// the literals are numbered in the order of the rules
+			for(int i = 0; i < literalRules.length; i++) {
+				if(found[i] && literalRules[i] >= 0) {
+					best = literalRules[i];
+					break;
+				}
+			}
+		}
+		boolean combinedMatch = true;
+		if(pattern != null && isCombinedPossible(best)) {
+			matcher.reset(line);
+			combinedMatch = matcher.find();
+			if(combinedMatch) {
+				for(int i = 0; i < combinedGroups.length; i++) {
+					if(matcher.start(combinedGroups[i]) >= 0) {
+						best = Math.min(best, combinedRules[i]);
+						break;
+					}
+				}
+			}
+			matcher.reset(""); //$NON-NLS-1$
+		}
+		for(int i = 0; i < best; i++) {
+			if(literal[i] || (combined[i] && !combinedMatch) || !isPossible(i)) {
+				// known not to match
+				continue;
+			}
+			if(rules[i].matches(line)) {
+				best = i;
+				break;
+			}
+		}
+		return best < rules.length ? best : -1;
+	}
+
+	// Package -----------------------------------------------------------------
+
+	/**
+	 * @return the rule value if it contains no regular expression syntax, so
+	 * it only matches itself, null otherwise
+	 */
+	static String asLiteral(String ruleValue) {
+		if(ruleValue == null || ruleValue.length() <= 0) {
+			return null;
+		}
+		for(int i = 0; i < ruleValue.length(); i++) {
+			if(REGEXP_SYNTAX.indexOf(ruleValue.charAt(i)) != -1) {
+				return null;
+			}
+		}
+		return ruleValue;
+	}
+
+	// Private -----------------------------------------------------------------
+
+	/**
+	 * @return false if the required literal of the rule is not in the line
+	 */
+	private boolean isPossible(int rule) {
+		return requiredLiterals[rule] < 0 || found[requiredLiterals[rule]];
+	}
+
+	/**
+	 * @return true if a combined rule before the given one may match the line
+	 */
+	private boolean isCombinedPossible(int best) {
+		for(int i = 0; i < combinedRules.length && combinedRules[i] < best; i++) {
+			if(isPossible(combinedRules[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void compileLiterals() {
+		List<String> texts = new ArrayList<String>();
+		List<Integer> owners = new ArrayList<Integer>();
+		List<Boolean> ignoreCase = new ArrayList<Boolean>();
+		for(int i = 0; i < rules.length; i++) {
+			requiredLiterals[i] = -1;
+			String text = rules[i].getLiteral();
+			if(text != null) {
+				literal[i] = true;
+				owners.add(Integer.valueOf(i));
+			} else {
+				text = rules[i].getRequiredLiteral();
+				if(text == null) {
+					continue;
+				}
+				requiredLiterals[i] = texts.size();
+				owners.add(Integer.valueOf(-1));
+			}
+			texts.add(text);
+			ignoreCase.add(Boolean.valueOf(rules[i].isCaseInsensitive()));
+		}
+		if(texts.isEmpty()) {
+			return;
+		}
+		boolean[] caseInsensitive = new boolean[texts.size()];
+		literalRules = new int[texts.size()];
+		for(int i = 0; i < literalRules.length; i++) {
+			literalRules[i] = owners.get(i).intValue();
+			caseInsensitive[i] = ignoreCase.get(i).booleanValue();
+		}
+		found = new boolean[texts.size()];
+		literals = new LiteralAutomaton(texts.toArray(new String[texts.size()]), caseInsensitive);
+	}
+
+	private void compilePatterns() {
+		StringBuffer buffer = new StringBuffer();
+		List<Integer> groups = new ArrayList<Integer>();
+		List<Integer> owners = new ArrayList<Integer>();
+		int group = 1;
+		for(int i = 0; i < rules.length; i++) {
+			if(literal[i] || !(rules[i] instanceof JavaRegExpRule)) {
+				continue;
+			}
+			JavaRegExpRule rule = (JavaRegExpRule)rules[i];
+			if(!rule.isFind() || !isCombinable(rule.getPattern().pattern())) {
+				continue;
+			}
+			if(buffer.length() > 0) {
+				buffer.append('|');
+			}
+			buffer.append('(');
+			if(rule.isCaseInsensitive()) {
+				buffer.append("(?iu:"); //$NON-NLS-1$
+			} else {
+				buffer.append("(?:"); //$NON-NLS-1$
+			}
+			buffer.append(rule.getPattern().pattern());
+			buffer.append("))"); //$NON-NLS-1$
+			groups.add(Integer.valueOf(group));
+			owners.add(Integer.valueOf(i));
+			group += 1 + rule.getPattern().matcher("").groupCount(); //$NON-NLS-1$
+		}
+		if(owners.size() < 2) {
+			// nothing to gain
+			return;
+		}
+		try {
+			pattern = Pattern.compile(buffer.toString());
+			matcher = pattern.matcher(""); //$NON-NLS-1$
+		} catch(PatternSyntaxException e) {
+			// e.g. the same named group in two rules, they are tried on their own
+			return;
+		}
+		combinedGroups = new int[groups.size()];
+		combinedRules = new int[owners.size()];
+		for(int i = 0; i < combinedRules.length; i++) {
+			combinedGroups[i] = groups.get(i).intValue();
+			combinedRules[i] = owners.get(i).intValue();
+			combined[combinedRules[i]] = true;
+		}
+	}
+
+	/**
+	 * @return false if the pattern would not mean the same as a part of the
+	 * alternation, i.e. it refers to its groups by number, or it could swallow
+	 * the closing parenthesis with a comment or a quote
+	 */
+	private static boolean isCombinable(String pattern) {
+		for(int i = 0; i < pattern.length() - 1; i++) {
+			if(pattern.charAt(i) == '\\') {
+				char c = pattern.charAt(i + 1);
+				if((c >= '1' && c <= '9') || c == 'k' || c == 'Q') {
+					return false;
+				}
+				i++;
+			}
+		}
+		return pattern.indexOf('#') == -1 && !pattern.endsWith("\\"); //$NON-NLS-1$
+	}
+}